@@ -0,0 +1,19 @@
+package com.httptest.httpdemo.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * 缓存的响应, body为序列化后的字节, headers为命中时需要一起返回的响应头
+ */
+@Getter
+@AllArgsConstructor
+public class CachedResponse {
+    private final byte[] body;
+    private final String contentType;
+    private final String etag;
+    private final String[] tags;
+    private final Map<String, String> headers;
+}
@@ -0,0 +1,146 @@
+package com.httptest.httpdemo.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.httptest.httpdemo.model.Coffee;
+import com.httptest.httpdemo.repository.CoffeeRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 读接口的响应缓存, 缓存序列化后的响应体和ETag
+ * 使用Caffeine(W-TinyLFU)按字节数限制大小; 每条缓存带有标签(id:xx / name:xx / all),
+ * CoffeeRepository写入时按标签精确失效
+ * 未命中时同一个key的并发请求通过SingleFlight只生成一次响应, 其余请求等待并直接返回生成的结果
+ */
+@Component
+public class ResponseCache {
+
+    public static final String TAG_ALL = "all";
+
+    private final Cache<String, CachedResponse> cache;
+    private final ConcurrentHashMap<String, Set<String>> keysByTag = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder notModified = new LongAdder();
+    private final int maxEntryBytes;
+    private final SingleFlight<String, CachedResponse> loads;
+
+    public ResponseCache(CoffeeRepository coffeeRepository,
+                         @Value("${coffee.cache.max-bytes:67108864}") long maxBytes,
+                         @Value("${coffee.cache.max-entry-bytes:1048576}") int maxEntryBytes,
+                         @Value("${coffee.singleflight.timeout:1000}") long singleFlightTimeoutMillis) {
+        this.maxEntryBytes = maxEntryBytes;
+        this.loads = new SingleFlight<>(singleFlightTimeoutMillis);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, CachedResponse value) -> key.length() + value.getBody().length)
+                .removalListener((String key, CachedResponse value, RemovalCause cause) -> {
+                    if (key != null && value != null && cause != RemovalCause.REPLACED) {
+                        untag(key, value.getTags());
+                    }
+                })
+                .recordStats()
+                .build();
+        coffeeRepository.addListener(this::invalidate);
+    }
+
+    /**
+     * 写入代数, 缓存未命中时先记录, 写入缓存时校验, 避免计算期间发生的写入被旧结果覆盖
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    public CachedResponse get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * 缓存未命中时生成响应, 同一个key同时只有一个请求执行loader, 其余请求等待并共享loader的返回值
+     * loader只应返回已经写入缓存的响应, 未写入(不可缓存或生成期间发生了写入)时返回null, 等待的请求需要自己生成
+     * @throws SingleFlightTimeoutException 等待超时
+     */
+    public CachedResponse load(String key, Supplier<CachedResponse> loader) {
+        return loads.execute(key, loader);
+    }
+
+    public boolean isCacheable(int bodyLength) {
+        return bodyLength <= maxEntryBytes;
+    }
+
+    /**
+     * @return 是否写入了缓存, expectedGeneration之后发生过写入时返回false
+     */
+    public boolean put(String key, CachedResponse response, long expectedGeneration) {
+        if (generation.get() != expectedGeneration) {
+            return false;
+        }
+        for (String tag : response.getTags()) {
+            keysByTag.computeIfAbsent(tag, t -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+        cache.put(key, response);
+        //写入与put并发时, 放弃本次结果
+        if (generation.get() != expectedGeneration) {
+            cache.invalidate(key);
+            return false;
+        }
+        return true;
+    }
+
+    public void recordNotModified() {
+        notModified.increment();
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("size", cache.estimatedSize());
+        map.put("hits", stats.hitCount());
+        map.put("misses", stats.missCount());
+        map.put("evictions", stats.evictionCount());
+        map.put("notModified", notModified.sum());
+        return map;
+    }
+
+    public Map<String, Object> singleFlightStats() {
+        return loads.stats();
+    }
+
+    private void invalidate(Coffee previous, Coffee current) {
+        generation.incrementAndGet();
+        invalidateTag(TAG_ALL);
+        invalidateTag("id:" + current.getId());
+        if (previous != null && previous.getName() != null) {
+            invalidateTag("name:" + previous.getName());
+        }
+        if (current.getName() != null) {
+            invalidateTag("name:" + current.getName());
+        }
+    }
+
+    private void invalidateTag(String tag) {
+        Set<String> keys = keysByTag.remove(tag);
+        if (keys != null) {
+            cache.invalidateAll(keys);
+        }
+    }
+
+    private void untag(String key, String[] tags) {
+        for (String tag : tags) {
+            Set<String> keys = keysByTag.get(tag);
+            if (keys != null) {
+                keys.remove(key);
+            }
+        }
+    }
+}
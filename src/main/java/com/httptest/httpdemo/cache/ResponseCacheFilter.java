@@ -0,0 +1,226 @@
+package com.httptest.httpdemo.cache;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.UriUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Coffee读接口的响应缓存过滤器
+ * 缓存以下接口的200响应: GET /coffee, /coffee?limit=, /coffee?name=, /coffee/{id}, /coffee/findById?id=
+ * 缓存key为请求路径+查询参数+Accept, 命中时直接返回缓存的字节, If-None-Match匹配时返回304
+ * 未命中时同一个key的并发请求只执行一次处理器和序列化, 其余请求返回其写入缓存的结果
+ */
+public class ResponseCacheFilter extends OncePerRequestFilter {
+
+    /**
+     * 由缓存直接返回响应时设置的请求属性
+     */
+    public static final String CACHE_HIT_ATTRIBUTE = ResponseCacheFilter.class.getName() + ".HIT";
+
+    private static final String PREFIX = "/coffee";
+
+    /**
+     * /coffee/{segment}中不是id的路径
+     */
+    private static final Set<String> RESERVED = new HashSet<>(Arrays.asList("find", "files", "uploads", "search"));
+
+    /**
+     * 命中缓存时需要一起返回的响应头, X-Next-Cursor为/coffee?limit=分页的下一页游标
+     */
+    private static final List<String> REPLAYED_HEADERS = Collections.singletonList("X-Next-Cursor");
+
+    private final ResponseCache responseCache;
+
+    public ResponseCacheFilter(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        String[] tags = tags(request);
+        if (tags == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        String key = key(request);
+        CachedResponse cached = responseCache.get(key);
+        if (cached != null) {
+            request.setAttribute(CACHE_HIT_ATTRIBUTE, Boolean.TRUE);
+            write(request, response, cached);
+            return;
+        }
+
+        //同一个key只有一个请求(leader)执行处理器并序列化, 其余请求等待leader写入缓存的结果
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        boolean[] leader = new boolean[1];
+        Exception[] failure = new Exception[1];
+        CachedResponse shared;
+        try {
+            shared = responseCache.load(key, () -> {
+                leader[0] = true;
+                try {
+                    return render(request, wrapper, chain, key, tags);
+                } catch (IOException | ServletException | RuntimeException e) {
+                    //leader的异常(如客户端断开)不传给等待的请求, 它们自己重新生成
+                    failure[0] = e;
+                    return null;
+                }
+            });
+        } catch (SingleFlightTimeoutException e) {
+            shared = null;
+        }
+        if (leader[0]) {
+            try {
+                rethrow(failure[0]);
+            } finally {
+                wrapper.copyBodyToResponse();
+            }
+            return;
+        }
+        if (shared != null) {
+            request.setAttribute(CACHE_HIT_ATTRIBUTE, Boolean.TRUE);
+            write(request, response, shared);
+            return;
+        }
+        try {
+            render(request, wrapper, chain, key, tags);
+        } finally {
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    /**
+     * 执行处理器, 可缓存时写入缓存, 响应留在wrapper中, 由调用方写出
+     * @return 写入缓存的响应, 没有写入时为null
+     */
+    private CachedResponse render(HttpServletRequest request, ContentCachingResponseWrapper wrapper, FilterChain chain,
+                                  String key, String[] tags) throws ServletException, IOException {
+        long generation = responseCache.generation();
+        chain.doFilter(request, wrapper);
+        if (wrapper.getStatus() != HttpStatus.OK.value() || request.isAsyncStarted()
+                || !responseCache.isCacheable(wrapper.getContentSize())) {
+            return null;
+        }
+        byte[] body = wrapper.getContentAsByteArray();
+        CachedResponse cached = new CachedResponse(body, wrapper.getContentType(), "\"" + DigestUtils.md5DigestAsHex(body) + "\"", tags,
+                replayedHeaders(wrapper));
+        boolean stored = responseCache.put(key, cached, generation);
+        wrapper.setHeader(HttpHeaders.ETAG, cached.getEtag());
+        if (notModified(request, cached)) {
+            wrapper.resetBuffer();
+            wrapper.setStatus(HttpStatus.NOT_MODIFIED.value());
+        }
+        return stored ? cached : null;
+    }
+
+    private static void rethrow(Exception e) throws ServletException, IOException {
+        if (e instanceof ServletException) {
+            throw (ServletException) e;
+        }
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        }
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"GET".equals(request.getMethod());
+    }
+
+    private static Map<String, String> replayedHeaders(HttpServletResponse response) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (String name : REPLAYED_HEADERS) {
+            String value = response.getHeader(name);
+            if (value != null) {
+                headers.put(name, value);
+            }
+        }
+        return headers.isEmpty() ? Collections.emptyMap() : headers;
+    }
+
+    private void write(HttpServletRequest request, HttpServletResponse response, CachedResponse cached) throws IOException {
+        response.setHeader(HttpHeaders.ETAG, cached.getEtag());
+        for (Map.Entry<String, String> header : cached.getHeaders().entrySet()) {
+            response.setHeader(header.getKey(), header.getValue());
+        }
+        if (notModified(request, cached)) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+        response.setContentType(cached.getContentType());
+        response.setContentLength(cached.getBody().length);
+        response.getOutputStream().write(cached.getBody());
+    }
+
+    private boolean notModified(HttpServletRequest request, CachedResponse cached) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String etag : ifNoneMatch.split(",")) {
+            etag = etag.trim();
+            if (etag.equals(cached.getEtag()) || etag.equals("*")) {
+                responseCache.recordNotModified();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 根据请求确定缓存标签, 不缓存的请求返回null
+     */
+    private static String[] tags(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept != null && accept.contains(MediaType.APPLICATION_NDJSON_VALUE)) {
+            return null;
+        }
+        if (path.equals(PREFIX) || path.equals(PREFIX + "/")) {
+            if (request.getParameter("stream") != null) {
+                return null;
+            }
+            String name = request.getParameter("name");
+            return new String[]{name != null ? "name:" + name : ResponseCache.TAG_ALL};
+        }
+        if (!path.startsWith(PREFIX + "/")) {
+            return null;
+        }
+        String segment = path.substring(PREFIX.length() + 1);
+        if (segment.equals("findById")) {
+            String id = request.getParameter("id");
+            return id == null ? null : new String[]{"id:" + id};
+        }
+        if (segment.isEmpty() || segment.indexOf('/') >= 0 || segment.startsWith("_") || RESERVED.contains(segment)) {
+            return null;
+        }
+        return new String[]{"id:" + UriUtils.decode(segment, StandardCharsets.UTF_8)};
+    }
+
+    private static String key(HttpServletRequest request) {
+        String query = request.getQueryString();
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        return request.getRequestURI() + (query != null ? "?" + query : "") + "|" + (accept != null ? accept : "");
+    }
+}
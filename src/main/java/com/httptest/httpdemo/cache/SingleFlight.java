@@ -0,0 +1,84 @@
+package com.httptest.httpdemo.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 同一个key同时只执行一次计算, 计算期间到达的调用等待并共享结果(包括异常), 计算完成后不缓存结果
+ * 第一个调用在自己的线程上执行计算, 其余调用最多等待timeoutMillis, 超时抛出SingleFlightTimeoutException
+ * @param <K>
+ * @param <V>
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final long timeoutMillis;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    public SingleFlight(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public V execute(K key, Supplier<V> supplier) {
+        calls.increment();
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            collapsed.increment();
+            return await(existing);
+        }
+        executions.increment();
+        try {
+            V value = supplier.get();
+            inFlight.remove(key, future);
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            errors.increment();
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("calls", calls.sum());
+        map.put("executions", executions.sum());
+        map.put("collapsed", collapsed.sum());
+        map.put("timeouts", timeouts.sum());
+        map.put("errors", errors.sum());
+        map.put("inFlight", inFlight.size());
+        return map;
+    }
+
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw new SingleFlightTimeoutException("Timed out after " + timeoutMillis + "ms waiting for in-flight call");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SingleFlightTimeoutException("Interrupted while waiting for in-flight call");
+        } catch (ExecutionException e) {
+            //与执行计算的调用抛出相同的异常
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+}
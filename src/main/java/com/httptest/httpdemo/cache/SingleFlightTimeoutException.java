@@ -0,0 +1,11 @@
+package com.httptest.httpdemo.cache;
+
+/**
+ * 等待其他调用的计算结果超时, 由ResponseCacheFilter捕获后自己生成响应
+ */
+public class SingleFlightTimeoutException extends RuntimeException {
+
+    public SingleFlightTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,85 @@
+package com.httptest.httpdemo.client;
+
+import com.httptest.httpdemo.model.Coffee;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * /coffee接口的异步客户端, 基于WebClient和reactor-netty, 请求不占用调用方线程
+ * 同一主机的连接数由ConnectionProvider限制, 批量请求的并发数由concurrency限制, 超出的请求排队等待
+ * 不存在的记录(404)返回null
+ */
+public class AsyncCoffeeClient {
+
+    private static final ParameterizedTypeReference<List<Coffee>> COFFEE_LIST = new ParameterizedTypeReference<List<Coffee>>() {};
+
+    private final WebClient webClient;
+    private final int concurrency;
+
+    public AsyncCoffeeClient(WebClient webClient, int concurrency) {
+        this.webClient = webClient;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * 使用相同的连接池, 访问另一个地址
+     */
+    public AsyncCoffeeClient withBaseUrl(String baseUrl) {
+        return new AsyncCoffeeClient(webClient.mutate().baseUrl(baseUrl).build(), concurrency);
+    }
+
+    public CompletableFuture<List<Coffee>> getAll() {
+        return webClient.get().uri("/coffee").retrieve().bodyToMono(COFFEE_LIST).toFuture();
+    }
+
+    public CompletableFuture<Coffee> getById(String id) {
+        return byId(id).toFuture();
+    }
+
+    public CompletableFuture<Coffee> getByName(String name) {
+        return notFoundAsEmpty(webClient.get().uri("/coffee?name={name}", name).retrieve().bodyToMono(Coffee.class)).toFuture();
+    }
+
+    public CompletableFuture<Coffee> add(Coffee coffee) {
+        return webClient.post().uri("/coffee/body").bodyValue(coffee).retrieve().bodyToMono(Coffee.class).toFuture();
+    }
+
+    /**
+     * 并发查询多个id, 返回的future与ids顺序一一对应, 每个future在各自的响应返回时完成,
+     * 总耗时接近最慢的一个请求而不是所有请求之和
+     * @param ids
+     * @return
+     */
+    public List<CompletableFuture<Coffee>> getByIds(Collection<String> ids) {
+        List<CompletableFuture<Coffee>> futures = new ArrayList<>(ids.size());
+        List<Mono<Coffee>> requests = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            CompletableFuture<Coffee> future = new CompletableFuture<>();
+            futures.add(future);
+            requests.add(byId(id)
+                    .doOnSuccess(future::complete)
+                    .doOnError(future::completeExceptionally)
+                    .onErrorResume(e -> Mono.empty()));
+        }
+        Flux.fromIterable(requests).flatMap(request -> request, concurrency).subscribe();
+        return futures;
+    }
+
+    private Mono<Coffee> byId(String id) {
+        return notFoundAsEmpty(webClient.get().uri("/coffee/{id}", id).retrieve().bodyToMono(Coffee.class));
+    }
+
+    private static Mono<Coffee> notFoundAsEmpty(Mono<Coffee> mono) {
+        return mono.onErrorResume(WebClientResponseException.class,
+                e -> e.getStatusCode() == HttpStatus.NOT_FOUND ? Mono.empty() : Mono.error(e));
+    }
+}
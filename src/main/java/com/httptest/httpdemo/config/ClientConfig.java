@@ -0,0 +1,136 @@
+package com.httptest.httpdemo.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.httptest.httpdemo.client.AsyncCoffeeClient;
+import com.httptest.httpdemo.converter.CoffeeBinaryHttpMessageConverter;
+import com.httptest.httpdemo.converter.CoffeeJsonHttpMessageConverter;
+import io.netty.channel.ChannelOption;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 调用/coffee接口的客户端
+ * 使用Apache HttpClient连接池, 按route限制连接数并复用keep-alive连接;
+ * RestTemplate为单例, 消息转换器只创建一次, 调用方注入使用, 不要每次new RestTemplate();
+ * 需要并发请求时使用AsyncCoffeeClient, 基于reactor-netty, 不阻塞调用方线程
+ */
+@Configuration
+public class ClientConfig {
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient coffeeHttpClient(@Value("${coffee.client.max-total:200}") int maxTotal,
+                                                @Value("${coffee.client.max-per-route:50}") int maxPerRoute,
+                                                @Value("${coffee.client.connect-timeout:1000}") int connectTimeout,
+                                                @Value("${coffee.client.read-timeout:5000}") int readTimeout,
+                                                @Value("${coffee.client.pool-timeout:1000}") int poolTimeout,
+                                                @Value("${coffee.client.keep-alive:15000}") long keepAlive,
+                                                @Value("${coffee.client.validate-after-inactivity:2000}") int validateAfterInactivity) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        //空闲超过该时间的连接在复用前先检查是否已被服务端关闭
+        connectionManager.setValidateAfterInactivity(validateAfterInactivity);
+
+        //响应中没有Keep-Alive: timeout时使用keepAlive, 应小于服务端的keep-alive超时(Tomcat默认20秒)
+        ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return duration > 0 ? Math.min(duration, keepAlive) : keepAlive;
+        };
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(connectTimeout)
+                        .setSocketTimeout(readTimeout)
+                        .setConnectionRequestTimeout(poolTimeout)
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(keepAlive, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @Bean
+    public HttpComponentsClientHttpRequestFactory coffeeClientHttpRequestFactory(CloseableHttpClient coffeeHttpClient) {
+        return new HttpComponentsClientHttpRequestFactory(coffeeHttpClient);
+    }
+
+    /**
+     * 转换器与服务端相同: Coffee的json转换器在最前, 支持application/x-coffee-bin
+     * 配置了coffee.client.base-url时可以使用相对路径, 如 /coffee/{id}
+     * reactive profile下没有HttpMessageConverters, 使用默认的转换器
+     */
+    @Bean
+    public RestTemplate coffeeRestTemplate(HttpComponentsClientHttpRequestFactory coffeeClientHttpRequestFactory,
+                                           ObjectProvider<HttpMessageConverters> httpMessageConverters,
+                                           ObjectMapper objectMapper,
+                                           @Value("${coffee.client.base-url:}") String baseUrl) {
+        List<HttpMessageConverter<?>> converters = new ArrayList<>(httpMessageConverters.getIfAvailable(HttpMessageConverters::new).getConverters());
+        converters.add(0, new CoffeeJsonHttpMessageConverter(objectMapper.getFactory()));
+        converters.add(new CoffeeBinaryHttpMessageConverter());
+        RestTemplate restTemplate = new RestTemplate(converters);
+        restTemplate.setRequestFactory(coffeeClientHttpRequestFactory);
+        if (StringUtils.hasText(baseUrl)) {
+            restTemplate.setUriTemplateHandler(new DefaultUriBuilderFactory(baseUrl));
+        }
+        return restTemplate;
+    }
+
+    /**
+     * reactor-netty连接池, 每个主机最多maxPerRoute个连接, 排队等待连接的请求超过poolTimeout则失败
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider coffeeConnectionProvider(@Value("${coffee.client.max-per-route:50}") int maxPerRoute,
+                                                       @Value("${coffee.client.pool-timeout:1000}") long poolTimeout,
+                                                       @Value("${coffee.client.keep-alive:15000}") long keepAlive) {
+        return ConnectionProvider.builder("coffee")
+                .maxConnections(maxPerRoute)
+                .pendingAcquireMaxCount(-1)
+                .pendingAcquireTimeout(Duration.ofMillis(poolTimeout))
+                .maxIdleTime(Duration.ofMillis(keepAlive))
+                .build();
+    }
+
+    /**
+     * 异步客户端, getByIds的并发数与每个主机的连接数相同, 不会因等待连接而超时
+     */
+    @Bean
+    public AsyncCoffeeClient asyncCoffeeClient(WebClient.Builder webClientBuilder,
+                                               ConnectionProvider coffeeConnectionProvider,
+                                               @Value("${coffee.client.max-per-route:50}") int maxPerRoute,
+                                               @Value("${coffee.client.connect-timeout:1000}") int connectTimeout,
+                                               @Value("${coffee.client.read-timeout:5000}") long readTimeout,
+                                               @Value("${coffee.client.base-url:}") String baseUrl) {
+        HttpClient httpClient = HttpClient.create(coffeeConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout)
+                .responseTimeout(Duration.ofMillis(readTimeout));
+        webClientBuilder.clientConnector(new ReactorClientHttpConnector(httpClient));
+        if (StringUtils.hasText(baseUrl)) {
+            webClientBuilder.baseUrl(baseUrl);
+        }
+        return new AsyncCoffeeClient(webClientBuilder.build(), maxPerRoute);
+    }
+}
@@ -0,0 +1,45 @@
+package com.httptest.httpdemo.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * coffee.startup.training-run=true时, 启动完成后请求一次GET /coffee然后退出,
+ * 用于生成CDS归档(mvn -Pcds package), 处理请求用到的类也被写入归档
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "coffee.startup.training-run", havingValue = "true")
+public class TrainingRun implements ApplicationListener<ApplicationReadyEvent> {
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        ConfigurableApplicationContext context = event.getApplicationContext();
+        if (context instanceof WebServerApplicationContext) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/coffee").openConnection();
+                try (InputStream in = connection.getInputStream()) {
+                    while (in.read() != -1) {
+                        //读完响应
+                    }
+                }
+                log.info("Training run: GET /coffee returned {}", connection.getResponseCode());
+            } catch (IOException e) {
+                log.warn("Training run: GET /coffee failed", e);
+            }
+        }
+        System.exit(SpringApplication.exit(context));
+    }
+}
@@ -0,0 +1,61 @@
+package com.httptest.httpdemo.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * coffee.server.virtual-threads=true时, Tomcat的每个请求在一个新的虚拟线程上执行, 不再受server.tomcat.threads.max限制,
+ * 慢速上传等阻塞IO的请求不会占满线程池而饿死其他请求
+ * 需要JDK 21+, 项目仍按1.8编译, 因此通过反射创建Executors.newVirtualThreadPerTaskExecutor();
+ * 低版本JDK上输出警告并继续使用Tomcat默认的线程池
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "coffee.server.virtual-threads", havingValue = "true")
+public class VirtualThreadTomcatCustomizer implements TomcatProtocolHandlerCustomizer<ProtocolHandler>, DisposableBean {
+
+    private final ExecutorService executor = newVirtualThreadPerTaskExecutor();
+
+    @Override
+    public void customize(ProtocolHandler protocolHandler) {
+        if (executor != null) {
+            protocolHandler.setExecutor(executor);
+        }
+    }
+
+    /**
+     * 外部设置的executor不会由Tomcat关闭
+     */
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        Method method;
+        try {
+            method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            log.warn("coffee.server.virtual-threads requires JDK 21+, running on {}; using Tomcat's platform thread pool",
+                    System.getProperty("java.version"));
+            return null;
+        }
+        try {
+            ExecutorService executor = (ExecutorService) method.invoke(null);
+            log.info("Tomcat requests run on virtual threads");
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create virtual thread executor", e);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.httptest.httpdemo.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.httptest.httpdemo.cache.ResponseCache;
+import com.httptest.httpdemo.cache.ResponseCacheFilter;
+import com.httptest.httpdemo.converter.CoffeeBinaryHttpMessageConverter;
+import com.httptest.httpdemo.converter.CoffeeJsonHttpMessageConverter;
+import com.httptest.httpdemo.limit.ConcurrencyLimitFilter;
+import com.httptest.httpdemo.limit.ConcurrencyLimits;
+import com.httptest.httpdemo.metrics.CoffeeMetrics;
+import com.httptest.httpdemo.metrics.CoffeeMetricsFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class WebConfig implements WebMvcConfigurer {
+
+    private final ObjectMapper objectMapper;
+
+    public WebConfig(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Bean
+    public FilterRegistrationBean<ResponseCacheFilter> responseCacheFilter(ResponseCache responseCache) {
+        FilterRegistrationBean<ResponseCacheFilter> registration = new FilterRegistrationBean<>(new ResponseCacheFilter(responseCache));
+        registration.addUrlPatterns("/coffee/*");
+        return registration;
+    }
+
+    /**
+     * 在ResponseCacheFilter之前, 过载时缓存命中的请求同样被拒绝; coffee.limit.enabled=false时不注册
+     */
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(ConcurrencyLimits concurrencyLimits) {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration = new FilterRegistrationBean<>(new ConcurrencyLimitFilter(concurrencyLimits));
+        registration.addUrlPatterns("/coffee/*");
+        registration.setEnabled(concurrencyLimits.isEnabled());
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE - 1);
+        return registration;
+    }
+
+    /**
+     * 在ResponseCacheFilter和ConcurrencyLimitFilter之前, 缓存命中和被拒绝的请求也被记录
+     */
+    @Bean
+    public FilterRegistrationBean<CoffeeMetricsFilter> coffeeMetricsFilter(CoffeeMetrics coffeeMetrics) {
+        FilterRegistrationBean<CoffeeMetricsFilter> registration = new FilterRegistrationBean<>(new CoffeeMetricsFilter(coffeeMetrics));
+        registration.addUrlPatterns("/coffee/*");
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE - 2);
+        return registration;
+    }
+
+    /**
+     * Coffee的json转换器放在最前, 优先于Jackson;
+     * 二进制格式放在最后, 未明确要求application/x-coffee-bin时仍返回json
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, new CoffeeJsonHttpMessageConverter(objectMapper.getFactory()));
+        converters.add(new CoffeeBinaryHttpMessageConverter());
+    }
+}
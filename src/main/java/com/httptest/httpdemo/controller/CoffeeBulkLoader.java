@@ -0,0 +1,112 @@
+package com.httptest.httpdemo.controller;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.httptest.httpdemo.model.BulkItemResult;
+import com.httptest.httpdemo.model.Coffee;
+import com.httptest.httpdemo.repository.CoffeeRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * /coffee/_bulk的批量写入, servlet和reactive版本共用
+ * 请求体为json数组或ndjson, 使用JsonParser逐条解析并直接绑定为Coffee, 每BATCH_SIZE条写入一次, 返回每条记录的处理结果
+ * 单条记录绑定失败返回400并继续处理, json语法错误时无法继续解析, 返回400并结束
+ * 一批写入失败时该批每条返回500, 继续处理后续记录
+ */
+@Component
+public class CoffeeBulkLoader {
+
+    /**
+     * 每批写入的记录数
+     */
+    private static final int BATCH_SIZE = 500;
+
+    private final CoffeeRepository coffeeRepository;
+    private final ObjectMapper objectMapper;
+
+    public CoffeeBulkLoader(CoffeeRepository coffeeRepository, ObjectMapper objectMapper) {
+        this.coffeeRepository = coffeeRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    public List<BulkItemResult> load(InputStream in) throws IOException {
+        List<BulkItemResult> results = new ArrayList<>();
+        List<Coffee> batch = new ArrayList<>(BATCH_SIZE);
+        List<BulkItemResult> pending = new ArrayList<>(BATCH_SIZE);
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            JsonToken token = parser.nextToken();
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array) {
+                token = parser.nextToken();
+            }
+            while (token != null && token != JsonToken.END_ARRAY) {
+                BulkItemResult result = BulkItemResult.builder().index(results.size()).build();
+                results.add(result);
+                JsonStreamContext enclosing = token.isStructStart() ? parser.getParsingContext().getParent() : parser.getParsingContext();
+                try {
+                    batch.add(objectMapper.readValue(parser, Coffee.class));
+                    pending.add(result);
+                } catch (JsonParseException e) {
+                    result.setStatus(HttpStatus.BAD_REQUEST.value());
+                    result.setError(e.getOriginalMessage());
+                    break;
+                } catch (JsonProcessingException e) {
+                    result.setStatus(HttpStatus.BAD_REQUEST.value());
+                    result.setError(e.getOriginalMessage());
+                    skipRest(parser, enclosing);
+                }
+                if (batch.size() == BATCH_SIZE) {
+                    flush(batch, pending);
+                }
+                token = parser.nextToken();
+            }
+        } catch (JsonParseException e) {
+            results.add(BulkItemResult.builder().index(results.size())
+                    .status(HttpStatus.BAD_REQUEST.value()).error(e.getOriginalMessage()).build());
+        }
+        flush(batch, pending);
+        return results;
+    }
+
+    /**
+     * 绑定失败时parser可能停在记录中间, 跳到该记录结束
+     */
+    private static void skipRest(JsonParser parser, JsonStreamContext enclosing) throws IOException {
+        while (parser.getParsingContext() != enclosing) {
+            if (parser.nextToken() == null) {
+                return;
+            }
+        }
+    }
+
+    private void flush(List<Coffee> batch, List<BulkItemResult> pending) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            List<Coffee> stored = coffeeRepository.saveAll(batch);
+            for (int i = 0; i < stored.size(); i++) {
+                pending.get(i).setId(stored.get(i).getId());
+                pending.get(i).setStatus(HttpStatus.OK.value());
+            }
+        } catch (RuntimeException e) {
+            //整批都没有写入, 记录到每一条的结果中, 不影响已返回的其他批次
+            for (BulkItemResult result : pending) {
+                result.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+                result.setError(e.getMessage());
+            }
+        }
+        batch.clear();
+        pending.clear();
+    }
+}
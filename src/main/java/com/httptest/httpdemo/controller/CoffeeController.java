@@ -1,13 +1,32 @@
 package com.httptest.httpdemo.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.httptest.httpdemo.limit.UploadBulkhead;
+import com.httptest.httpdemo.model.BulkItemResult;
 import com.httptest.httpdemo.model.Coffee;
 import com.httptest.httpdemo.model.CoffeeFile;
+import com.httptest.httpdemo.model.StoredFile;
+import com.httptest.httpdemo.repository.CoffeeRepository;
+import com.httptest.httpdemo.storage.MultipartUploader;
+import com.httptest.httpdemo.storage.UploadStorage;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.ServletRequestDataBinder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.multipart.MultipartRequest;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 
@@ -17,22 +36,98 @@ import java.util.*;
  */
 @RestController
 @RequestMapping("/coffee")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class CoffeeController {
 
+    static final int MAX_PAGE_SIZE = 1000;
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private final CoffeeRepository coffeeRepository;
+    private final UploadStorage uploadStorage;
+    private final ObjectMapper objectMapper;
+    private final CoffeeBulkLoader coffeeBulkLoader;
+    private final MultipartUploader multipartUploader;
+    private final UploadBulkhead uploadBulkhead;
+
+    public CoffeeController(CoffeeRepository coffeeRepository, UploadStorage uploadStorage, ObjectMapper objectMapper,
+                            CoffeeBulkLoader coffeeBulkLoader, MultipartUploader multipartUploader, UploadBulkhead uploadBulkhead) {
+        this.coffeeRepository = coffeeRepository;
+        this.uploadStorage = uploadStorage;
+        this.objectMapper = objectMapper;
+        this.coffeeBulkLoader = coffeeBulkLoader;
+        this.multipartUploader = multipartUploader;
+        this.uploadBulkhead = uploadBulkhead;
+    }
+
     @GetMapping("")
-    public List<Coffee> getAll() {
-        return Arrays.asList(Coffee.builder().name("natie").price(new BigDecimal(10)).build(),
-                Coffee.builder().name("kaboqino").price(new BigDecimal(11)).build());
+    public Collection<Coffee> getAll() {
+        return coffeeRepository.findAll();
+    }
+
+    /**
+     * 游标分页, after为上一页响应头X-Next-Cursor中的值, 没有下一页时不返回该响应头
+     * @param limit 每页条数, 最大MAX_PAGE_SIZE
+     * @param after
+     * @return
+     */
+    @GetMapping(value = "", params = "limit")
+    public ResponseEntity<List<Coffee>> getPage(@RequestParam int limit, @RequestParam(required = false) String after) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        List<Coffee> page = coffeeRepository.findPage(after == null ? null : decodeCursor(after), limit);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (page.size() == limit) {
+            String lastId = page.get(page.size() - 1).getId();
+            if (coffeeRepository.existsAfter(lastId)) {
+                builder.header(NEXT_CURSOR_HEADER, encodeCursor(lastId));
+            }
+        }
+        return builder.body(page);
+    }
+
+    /**
+     * ndjson, 边遍历边写出, 不在内存中生成完整列表
+     * @return
+     */
+    @GetMapping(value = "", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getAllNdjson() {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.setRootValueSeparator(null);
+                for (Coffee coffee : coffeeRepository.findAll()) {
+                    generator.writeObject(coffee);
+                    generator.writeRaw('\n');
+                }
+            }
+        });
+    }
+
+    /**
+     * stream=true, 以chunked方式逐条写出json数组
+     * @return
+     */
+    @GetMapping(value = "", params = "stream=true", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getAllStream() {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.writeStartArray();
+                for (Coffee coffee : coffeeRepository.findAll()) {
+                    generator.writeObject(coffee);
+                }
+                generator.writeEndArray();
+            }
+        });
     }
 
     @GetMapping(value = "", params = "name")
     public Coffee getByName(@RequestParam String name) {
-        return Coffee.builder().id("1").name(name).price(new BigDecimal(20)).build();
+        return found(coffeeRepository.findByName(name));
     }
 
     @GetMapping("/{id}")
     public Coffee getById(@PathVariable String id) {
-        return Coffee.builder().id(id).name("natie").price(new BigDecimal(20)).build();
+        return found(coffeeRepository.findById(id));
     }
 
     /**
@@ -49,7 +144,7 @@ public class CoffeeController {
 
     @GetMapping("/findById")
     public Coffee findById(String id) {
-        return Coffee.builder().id(id).name("abc").price(new BigDecimal(100)).build();
+        return found(coffeeRepository.findById(id));
     }
 
     /**
@@ -61,7 +156,7 @@ public class CoffeeController {
      */
     @PostMapping(value = "", params = "name")
     public Coffee add(String name, BigDecimal price) {
-        return Coffee.builder().id("1").name(name).price(price).build();
+        return coffeeRepository.save(Coffee.builder().name(name).price(price).build());
     }
 
     /**
@@ -71,7 +166,7 @@ public class CoffeeController {
      */
     @PostMapping("")
     public Coffee add2(Coffee coffee) {
-        return coffee;
+        return coffeeRepository.save(coffee);
     }
 
     /**
@@ -81,7 +176,7 @@ public class CoffeeController {
      */
     @PostMapping("/body")
     public Coffee addWithBody(@RequestBody Coffee coffee) {
-        return coffee;
+        return coffeeRepository.save(coffee);
     }
 
     /**
@@ -91,7 +186,7 @@ public class CoffeeController {
      */
     @PostMapping(value = "/form-data", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public Coffee addWithFormdata(Coffee coffee) {
-        return coffee;
+        return coffeeRepository.save(coffee);
     }
 
     /**
@@ -101,7 +196,7 @@ public class CoffeeController {
      */
     @PostMapping(value = "/form-data-urlencoded", consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
     public Coffee addWithFormdataUrlencoded(Coffee coffee) {
-        return coffee;
+        return coffeeRepository.save(coffee);
     }
 
     /**
@@ -111,7 +206,7 @@ public class CoffeeController {
      */
     @PostMapping(value = "/json", consumes = MediaType.APPLICATION_JSON_VALUE)
     public Coffee addWithJson(Coffee coffee) {
-        return coffee;
+        return coffeeRepository.save(coffee);
     }
 
     /**
@@ -122,37 +217,100 @@ public class CoffeeController {
      */
     @PostMapping(value = "/body-json", consumes = MediaType.APPLICATION_JSON_VALUE)
     public Coffee addWithBodyJson(@RequestBody Coffee coffee) {
-        return coffee;
+        return coffeeRepository.save(coffee);
+    }
+
+    /**
+     * 按id批量查询, 按请求中id的顺序返回, 不存在的id忽略
+     * @param ids
+     * @return
+     */
+    @PostMapping("/_mget")
+    public List<Coffee> mget(@RequestBody List<String> ids) {
+        List<Coffee> list = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Coffee coffee = coffeeRepository.findById(id);
+            if (coffee != null) {
+                list.add(coffee);
+            }
+        }
+        return list;
     }
 
+    /**
+     * 批量写入, 请求体为json数组或ndjson, 见CoffeeBulkLoader
+     * @param request
+     * @return
+     * @throws IOException
+     */
+    @PostMapping(value = "/_bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public List<BulkItemResult> bulk(HttpServletRequest request) throws IOException {
+        return coffeeBulkLoader.load(request.getInputStream());
+    }
+
+    /**
+     * 上传接口在UploadBulkhead的线程池上处理, 请求体在处理方法中才解析
+     * @param request
+     * @return
+     */
     @PostMapping(value = "/upload")
-    public String upload(MultipartFile file) {
-        String originalFilename = file.getOriginalFilename();
-        return originalFilename;
+    public WebAsyncTask<StoredFile> upload(MultipartHttpServletRequest request) {
+        return uploadBulkhead.submit(request, () -> uploadStorage.store(request.getFile("file")));
     }
 
     @PostMapping(value = "/upload1")
-    public String upload1(MultipartRequest request) {
-        MultipartFile multipartFile = request.getFile("file");
-        String originalFilename = multipartFile.getOriginalFilename();
-        return originalFilename;
+    public WebAsyncTask<StoredFile> upload1(MultipartHttpServletRequest request) {
+        return uploadBulkhead.submit(request, () -> {
+            MultipartFile multipartFile = request.getFile("file");
+            return uploadStorage.store(multipartFile);
+        });
     }
 
+    /**
+     * 请求中的文件并发保存, 结果按请求中的顺序返回
+     * @param request
+     * @return
+     */
     @PostMapping(value = "/upload2")
-    public String upload2(MultipartRequest request) {
-        Map<String, MultipartFile> map = request.getFileMap();
-        Set<Map.Entry<String, MultipartFile>> set = map.entrySet();
-        Iterator<Map.Entry<String, MultipartFile>> iterator = set.iterator();
-        List<String> list = new ArrayList<>();
-        while(iterator.hasNext()) {
-            list.add(iterator.next().getValue().getOriginalFilename());
-        }
-        return Arrays.toString(list.toArray());
+    public WebAsyncTask<List<StoredFile>> upload2(MultipartHttpServletRequest request) {
+        return uploadBulkhead.submit(request, () -> multipartUploader.storeAll(new ArrayList<>(request.getFileMap().values())));
     }
 
+    /**
+     * CoffeeFile的参数在异步任务中绑定, 绑定时才解析请求体
+     * @param request
+     * @return
+     */
     @PostMapping("/upload3")
-    public CoffeeFile upload3(MultipartFile file, CoffeeFile coffeeFile) {
-        coffeeFile.setFileName(file.getOriginalFilename());
-        return coffeeFile;
+    public WebAsyncTask<CoffeeFile> upload3(MultipartHttpServletRequest request) {
+        return uploadBulkhead.submit(request, () -> {
+            CoffeeFile coffeeFile = new CoffeeFile();
+            new ServletRequestDataBinder(coffeeFile).bind(request);
+            StoredFile stored = uploadStorage.store(request.getFile("file"));
+            coffeeFile.setFileName(stored.getFileName());
+            coffeeFile.setFileId(stored.getId());
+            coffeeFile.setSize(stored.getSize());
+            coffeeFile.setSha256(stored.getSha256());
+            return coffeeFile;
+        });
+    }
+
+    static String encodeCursor(String id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid cursor");
+        }
+    }
+
+    static Coffee found(Coffee coffee) {
+        if (coffee == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        return coffee;
     }
 }
@@ -0,0 +1,119 @@
+package com.httptest.httpdemo.controller;
+
+import com.httptest.httpdemo.model.StoredFile;
+import com.httptest.httpdemo.storage.UploadStorage;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 下载/coffee/upload*上传的文件
+ * 支持Range/If-Range断点续传(FileRanges), ETag为内容的SHA-256, If-None-Match命中时返回304
+ * Tomcat NIO连接器下使用sendfile直接由内核发送文件, 否则使用FileChannel.transferTo, 文件内容不经过堆内byte[]整体拷贝
+ */
+@RestController
+@RequestMapping("/coffee/files")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class CoffeeFileController {
+
+    /**
+     * 小于该大小的文件直接写出, 与Tomcat DefaultServlet的sendfileSize默认值一致
+     */
+    private static final long SENDFILE_THRESHOLD = 48 * 1024;
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final UploadStorage uploadStorage;
+
+    public CoffeeFileController(UploadStorage uploadStorage) {
+        this.uploadStorage = uploadStorage;
+    }
+
+    @GetMapping("/{id}")
+    public void download(@PathVariable String id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        StoredFile file = uploadStorage.find(id);
+        if (file == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        String etag = FileRanges.etag(file);
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return;
+        }
+
+        FileRanges.Selection selection = FileRanges.select(request.getHeader(HttpHeaders.RANGE),
+                request.getHeader(HttpHeaders.IF_RANGE), etag, file.getSize());
+        String contentRange = selection.contentRange();
+        if (contentRange != null) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange);
+        }
+        response.setStatus(selection.getStatus().value());
+        if (!selection.isSatisfiable()) {
+            return;
+        }
+
+        long start = selection.getStart();
+        long count = selection.getCount();
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(FileRanges.contentType(file).toString());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, FileRanges.contentDisposition(file, id).toString());
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count == 0) {
+            return;
+        }
+        transfer(uploadStorage.path(file), start, count, request, response);
+    }
+
+    /**
+     * 删除上传记录, 内容没有其他记录引用时一起删除
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> delete(@PathVariable String id) throws IOException {
+        if (!uploadStorage.delete(id)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    private void transfer(Path path, long start, long count, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (count >= SENDFILE_THRESHOLD && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            //由Tomcat在请求处理结束后通过sendfile发送, end不包含
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long n = channel.transferTo(position, remaining, out);
+                if (n <= 0) {
+                    break;
+                }
+                position += n;
+                remaining -= n;
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.httptest.httpdemo.controller;
+
+import com.httptest.httpdemo.limit.ConcurrencyLimits;
+import com.httptest.httpdemo.metrics.CoffeeMetrics;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Prometheus抓取接口
+ */
+@RestController
+public class CoffeeMetricsController {
+
+    private final CoffeeMetrics coffeeMetrics;
+    private final ConcurrencyLimits concurrencyLimits;
+
+    public CoffeeMetricsController(CoffeeMetrics coffeeMetrics, ConcurrencyLimits concurrencyLimits) {
+        this.coffeeMetrics = coffeeMetrics;
+        this.concurrencyLimits = concurrencyLimits;
+    }
+
+    @GetMapping("/coffee/_metrics")
+    public ResponseEntity<String> metrics() {
+        return ResponseEntity.ok().header(HttpHeaders.CONTENT_TYPE, CoffeeMetrics.CONTENT_TYPE).body(coffeeMetrics.prometheus() + concurrencyLimits.prometheus());
+    }
+}
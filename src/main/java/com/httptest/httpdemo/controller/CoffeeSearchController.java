@@ -0,0 +1,53 @@
+package com.httptest.httpdemo.controller;
+
+import com.httptest.httpdemo.model.Coffee;
+import com.httptest.httpdemo.search.CoffeeSearchIndex;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+/**
+ * 按名称搜索, servlet和reactive版本共用
+ * prefix: 前缀, contains: 子串, fuzzy: 近似匹配, 三者只能指定一个, 不区分大小写
+ */
+@RestController
+@RequestMapping("/coffee")
+public class CoffeeSearchController {
+
+    /**
+     * 每次搜索最多返回的记录数
+     */
+    public static final int MAX_SEARCH_SIZE = 100;
+
+    private final CoffeeSearchIndex coffeeSearchIndex;
+
+    public CoffeeSearchController(CoffeeSearchIndex coffeeSearchIndex) {
+        this.coffeeSearchIndex = coffeeSearchIndex;
+    }
+
+    @GetMapping("/search")
+    public List<Coffee> search(@RequestParam(required = false) String prefix,
+                               @RequestParam(required = false) String contains,
+                               @RequestParam(required = false) String fuzzy,
+                               @RequestParam(defaultValue = "10") int limit) {
+        if (limit <= 0 || limit > MAX_SEARCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_SEARCH_SIZE);
+        }
+        int count = (prefix == null ? 0 : 1) + (contains == null ? 0 : 1) + (fuzzy == null ? 0 : 1);
+        if (count != 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "exactly one of prefix, contains and fuzzy is required");
+        }
+        if (prefix != null) {
+            return coffeeSearchIndex.prefix(prefix, limit);
+        }
+        if (contains != null) {
+            return coffeeSearchIndex.contains(contains, limit);
+        }
+        return coffeeSearchIndex.fuzzy(fuzzy, limit);
+    }
+}
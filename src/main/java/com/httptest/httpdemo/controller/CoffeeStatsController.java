@@ -0,0 +1,92 @@
+package com.httptest.httpdemo.controller;
+
+import com.httptest.httpdemo.cache.ResponseCache;
+import com.httptest.httpdemo.limit.ConcurrencyLimits;
+import com.httptest.httpdemo.limit.UploadBulkhead;
+import com.httptest.httpdemo.repository.CoffeeStore;
+import com.httptest.httpdemo.search.CoffeeSearchIndex;
+import com.httptest.httpdemo.storage.UploadStorage;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * 运行状态统计
+ */
+@RestController
+@RequestMapping("/coffee/_stats")
+public class CoffeeStatsController {
+
+    private final ResponseCache responseCache;
+    private final UploadStorage uploadStorage;
+    private final ConcurrencyLimits concurrencyLimits;
+    private final UploadBulkhead uploadBulkhead;
+    private final CoffeeStore coffeeStore;
+    private final CoffeeSearchIndex coffeeSearchIndex;
+
+    public CoffeeStatsController(ResponseCache responseCache, UploadStorage uploadStorage,
+                                 ConcurrencyLimits concurrencyLimits, UploadBulkhead uploadBulkhead, CoffeeStore coffeeStore,
+                                 CoffeeSearchIndex coffeeSearchIndex) {
+        this.responseCache = responseCache;
+        this.uploadStorage = uploadStorage;
+        this.concurrencyLimits = concurrencyLimits;
+        this.uploadBulkhead = uploadBulkhead;
+        this.coffeeStore = coffeeStore;
+        this.coffeeSearchIndex = coffeeSearchIndex;
+    }
+
+    @GetMapping("/cache")
+    public Map<String, Object> cache() {
+        return responseCache.stats();
+    }
+
+    /**
+     * 缓存未命中时响应生成的合并情况, collapsed为共享了其他请求生成结果的次数
+     */
+    @GetMapping("/singleflight")
+    public Map<String, Object> singleFlight() {
+        return responseCache.singleFlightStats();
+    }
+
+    /**
+     * 上传文件的去重情况, deduplicated为内容已存在、未重复保存的上传次数
+     */
+    @GetMapping("/storage")
+    public Map<String, Object> storage() {
+        return uploadStorage.stats();
+    }
+
+    /**
+     * 各分组当前的并发数限制, 进行中和被拒绝的请求数
+     */
+    @GetMapping("/limits")
+    public Map<String, Object> limits() {
+        return concurrencyLimits.stats();
+    }
+
+    /**
+     * 上传接口隔离线程池的使用情况, bytes为处理中的请求体字节数
+     */
+    @GetMapping("/bulkhead")
+    public Map<String, Object> bulkhead() {
+        return uploadBulkhead.stats();
+    }
+
+    /**
+     * Coffee日志和快照, records/syncs为平均每次fsync提交的记录数
+     */
+    @GetMapping("/store")
+    public Map<String, Object> store() {
+        return coffeeStore.stats();
+    }
+
+    /**
+     * 搜索索引中的名称数和三元组数
+     */
+    @GetMapping("/search")
+    public Map<String, Object> search() {
+        return coffeeSearchIndex.stats();
+    }
+}
@@ -0,0 +1,98 @@
+package com.httptest.httpdemo.controller;
+
+import com.httptest.httpdemo.limit.UploadBulkhead;
+import com.httptest.httpdemo.model.StoredFile;
+import com.httptest.httpdemo.model.UploadSession;
+import com.httptest.httpdemo.storage.UploadSessions;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.net.URI;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 断点续传
+ * 1. POST /coffee/uploads?fileName=&size= 创建会话
+ * 2. PUT /coffee/uploads/{id} 上传分片, Content-Range: bytes start-end/size, 分片可以并发、乱序
+ * 3. GET /coffee/uploads/{id} 查询已收到的区间, 中断后从offset继续
+ * 4. POST /coffee/uploads/{id}/complete 完成上传, 返回与/coffee/upload相同的StoredFile
+ * 写入分片和完成时计算SHA-256与/coffee/upload*一样在UploadBulkhead的隔离线程池上执行, 不占用Tomcat线程
+ */
+@RestController
+@RequestMapping("/coffee/uploads")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class CoffeeUploadController {
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+
+    private final UploadSessions uploadSessions;
+    private final UploadBulkhead uploadBulkhead;
+
+    public CoffeeUploadController(UploadSessions uploadSessions, UploadBulkhead uploadBulkhead) {
+        this.uploadSessions = uploadSessions;
+        this.uploadBulkhead = uploadBulkhead;
+    }
+
+    @PostMapping("")
+    public ResponseEntity<UploadSession> create(@RequestParam(required = false) String fileName,
+                                                @RequestParam(required = false) String contentType,
+                                                @RequestParam long size) throws IOException {
+        UploadSession session = uploadSessions.create(fileName, contentType, size);
+        return ResponseEntity.created(URI.create("/coffee/uploads/" + session.getId())).body(session);
+    }
+
+    @GetMapping("/{id}")
+    public UploadSession get(@PathVariable String id) {
+        UploadSession session = uploadSessions.find(id);
+        if (session == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        return session;
+    }
+
+    @PutMapping("/{id}")
+    public WebAsyncTask<UploadSession> write(@PathVariable String id, @RequestHeader(HttpHeaders.CONTENT_RANGE) String contentRange,
+                                             HttpServletRequest request) {
+        Matcher matcher = CONTENT_RANGE.matcher(contentRange.trim());
+        if (!matcher.matches()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Content-Range must be bytes start-end/size");
+        }
+        long start = Long.parseLong(matcher.group(1));
+        long end = Long.parseLong(matcher.group(2));
+        if (end < start) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Content-Range end is before start");
+        }
+        UploadSession session = get(id);
+        if (!"*".equals(matcher.group(3)) && Long.parseLong(matcher.group(3)) != session.getSize()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Content-Range size does not match " + session.getSize());
+        }
+        return uploadBulkhead.submit(request, () -> uploadSessions.write(id, start, end - start + 1, request.getInputStream()));
+    }
+
+    /**
+     * @param id
+     * @param sha256 可选, 与收到内容的SHA-256比较
+     * @return
+     */
+    @PostMapping("/{id}/complete")
+    public WebAsyncTask<StoredFile> complete(@PathVariable String id, @RequestParam(required = false) String sha256,
+                                             HttpServletRequest request) {
+        return uploadBulkhead.submit(request, () -> uploadSessions.complete(id, sha256));
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> delete(@PathVariable String id) throws IOException {
+        if (!uploadSessions.delete(id)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,131 @@
+package com.httptest.httpdemo.controller;
+
+import com.httptest.httpdemo.model.StoredFile;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * /coffee/files下载的Range/If-Range/ETag处理, servlet和reactive版本共用
+ */
+final class FileRanges {
+
+    private FileRanges() {
+    }
+
+    /**
+     * 强ETag, 为内容的SHA-256
+     */
+    static String etag(StoredFile file) {
+        return "\"" + file.getSha256() + "\"";
+    }
+
+    /**
+     * 根据Range和If-Range确定返回的字节范围
+     * 没有Range、If-Range不匹配、Range格式错误或为多段(RFC 7233允许忽略)时返回完整内容
+     */
+    static Selection select(String range, String ifRange, String etag, long length) {
+        if (range == null || !ifRangeMatches(ifRange, etag)) {
+            return Selection.full(length);
+        }
+        List<HttpRange> ranges = parseRanges(range);
+        if (ranges.size() != 1) {
+            return Selection.full(length);
+        }
+        HttpRange httpRange = ranges.get(0);
+        long start = httpRange.getRangeStart(length);
+        long end = Math.min(httpRange.getRangeEnd(length), length - 1);
+        if (start >= length || start > end) {
+            return new Selection(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, 0, 0, length);
+        }
+        return new Selection(HttpStatus.PARTIAL_CONTENT, start, end - start + 1, length);
+    }
+
+    /**
+     * 上传时客户端提供的Content-Type, 为空或格式错误时为application/octet-stream
+     */
+    static MediaType contentType(StoredFile file) {
+        if (file.getContentType() == null) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+        try {
+            return MediaType.parseMediaType(file.getContentType());
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+
+    static ContentDisposition contentDisposition(StoredFile file, String id) {
+        return ContentDisposition.attachment()
+                .filename(file.getFileName() != null ? file.getFileName() : id, StandardCharsets.UTF_8).build();
+    }
+
+    /**
+     * 只支持强ETag形式的If-Range, 日期形式视为不匹配, 返回完整内容
+     */
+    private static boolean ifRangeMatches(String ifRange, String etag) {
+        return ifRange == null || ifRange.trim().equals(etag);
+    }
+
+    private static List<HttpRange> parseRanges(String range) {
+        try {
+            return HttpRange.parseRanges(range);
+        } catch (IllegalArgumentException e) {
+            //格式错误的Range忽略
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * 返回的状态码和字节范围, status为416时不返回内容
+     */
+    static final class Selection {
+        private final HttpStatus status;
+        private final long start;
+        private final long count;
+        private final long length;
+
+        private Selection(HttpStatus status, long start, long count, long length) {
+            this.status = status;
+            this.start = start;
+            this.count = count;
+            this.length = length;
+        }
+
+        private static Selection full(long length) {
+            return new Selection(HttpStatus.OK, 0, length, length);
+        }
+
+        HttpStatus getStatus() {
+            return status;
+        }
+
+        long getStart() {
+            return start;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        boolean isSatisfiable() {
+            return status != HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE;
+        }
+
+        /**
+         * @return Content-Range响应头, 返回完整内容时为null
+         */
+        String contentRange() {
+            if (status == HttpStatus.PARTIAL_CONTENT) {
+                return "bytes " + start + "-" + (start + count - 1) + "/" + length;
+            }
+            return isSatisfiable() ? null : "bytes */" + length;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.httptest.httpdemo.controller;
+
+import com.httptest.httpdemo.model.BulkItemResult;
+import com.httptest.httpdemo.model.Coffee;
+import com.httptest.httpdemo.model.CoffeeFile;
+import com.httptest.httpdemo.model.StoredFile;
+import com.httptest.httpdemo.repository.CoffeeRepository;
+import com.httptest.httpdemo.storage.MultipartUploader;
+import com.httptest.httpdemo.storage.UploadStorage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.httptest.httpdemo.controller.CoffeeController.*;
+
+/**
+ * CoffeeController的WebFlux版本, 接口和参数绑定方式与servlet版本一致, 使用reactive profile启动(Netty)
+ * 与servlet版本的差异:
+ * 1. @RequestParam和params条件只匹配url参数, 表单中的name不会选中add(name, price), 因此POST ""合并为一个方法, 带name时忽略id, 结果与servlet版本相同
+ * 2. 上传的文件以FilePart流式写入UploadStorage, 不经过MultipartFile
+ * 3. _bulk先汇总请求体再解析, 请求体超过coffee.bulk.max-bytes时返回413
+ * 4. 写入需要等待日志fsync, 在boundedElastic线程上执行
+ */
+@RestController
+@RequestMapping("/coffee")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCoffeeController {
+
+    private final CoffeeRepository coffeeRepository;
+    private final UploadStorage uploadStorage;
+    private final CoffeeBulkLoader coffeeBulkLoader;
+    private final int uploadParallelism;
+    private final int bulkMaxBytes;
+
+    public ReactiveCoffeeController(CoffeeRepository coffeeRepository, UploadStorage uploadStorage, CoffeeBulkLoader coffeeBulkLoader,
+                                    MultipartUploader multipartUploader,
+                                    @Value("${coffee.bulk.max-bytes:16777216}") int bulkMaxBytes) {
+        this.coffeeRepository = coffeeRepository;
+        this.uploadStorage = uploadStorage;
+        this.coffeeBulkLoader = coffeeBulkLoader;
+        this.uploadParallelism = multipartUploader.getParallelism();
+        this.bulkMaxBytes = bulkMaxBytes;
+    }
+
+    @GetMapping("")
+    public Flux<Coffee> getAll() {
+        return Flux.fromIterable(coffeeRepository.findAll());
+    }
+
+    @GetMapping(value = "", params = "limit")
+    public ResponseEntity<List<Coffee>> getPage(@RequestParam int limit, @RequestParam(required = false) String after) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        List<Coffee> page = coffeeRepository.findPage(after == null ? null : decodeCursor(after), limit);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (page.size() == limit) {
+            String lastId = page.get(page.size() - 1).getId();
+            if (coffeeRepository.existsAfter(lastId)) {
+                builder.header(NEXT_CURSOR_HEADER, encodeCursor(lastId));
+            }
+        }
+        return builder.body(page);
+    }
+
+    /**
+     * Flux按ndjson逐条写出
+     * @return
+     */
+    @GetMapping(value = "", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Coffee> getAllNdjson() {
+        return Flux.fromIterable(coffeeRepository.findAll());
+    }
+
+    /**
+     * Flux按json数组逐条写出
+     * @return
+     */
+    @GetMapping(value = "", params = "stream=true", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<Coffee> getAllStream() {
+        return Flux.fromIterable(coffeeRepository.findAll());
+    }
+
+    @GetMapping(value = "", params = "name")
+    public Coffee getByName(@RequestParam String name) {
+        return found(coffeeRepository.findByName(name));
+    }
+
+    @GetMapping("/{id}")
+    public Coffee getById(@PathVariable String id) {
+        return found(coffeeRepository.findById(id));
+    }
+
+    @GetMapping("/find")
+    public Coffee find(Coffee coffee) {
+        return coffee;
+    }
+
+    @GetMapping("/findById")
+    public Coffee findById(String id) {
+        return found(coffeeRepository.findById(id));
+    }
+
+    /**
+     * params + (form-data / form-urlencoded)
+     * 带name参数时与servlet版本的add(name, price)一致, 只保存name和price
+     * @param coffee
+     * @return
+     */
+    @PostMapping("")
+    public Mono<Coffee> add(Coffee coffee) {
+        if (coffee.getName() != null) {
+            return save(Coffee.builder().name(coffee.getName()).price(coffee.getPrice()).build());
+        }
+        return save(coffee);
+    }
+
+    @PostMapping("/body")
+    public Mono<Coffee> addWithBody(@RequestBody Coffee coffee) {
+        return save(coffee);
+    }
+
+    @PostMapping(value = "/form-data", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Mono<Coffee> addWithFormdata(Coffee coffee) {
+        return save(coffee);
+    }
+
+    @PostMapping(value = "/form-data-urlencoded", consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+    public Mono<Coffee> addWithFormdataUrlencoded(Coffee coffee) {
+        return save(coffee);
+    }
+
+    /**
+     * 只有params传参会被接收到
+     * @param coffee
+     * @return
+     */
+    @PostMapping(value = "/json", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<Coffee> addWithJson(Coffee coffee) {
+        return save(coffee);
+    }
+
+    @PostMapping(value = "/body-json", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<Coffee> addWithBodyJson(@RequestBody Coffee coffee) {
+        return save(coffee);
+    }
+
+    @PostMapping("/_mget")
+    public List<Coffee> mget(@RequestBody List<String> ids) {
+        List<Coffee> list = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Coffee coffee = coffeeRepository.findById(id);
+            if (coffee != null) {
+                list.add(coffee);
+            }
+        }
+        return list;
+    }
+
+    @PostMapping(value = "/_bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Mono<List<BulkItemResult>> bulk(@RequestBody Flux<DataBuffer> body) {
+        //每个buffer复制后立即释放, 超过上限时不再持有Netty的buffer
+        return body.map(ReactiveCoffeeController::copy)
+                .reduceWith(ByteArrayOutputStream::new, (out, bytes) -> {
+                    if (out.size() + bytes.length > bulkMaxBytes) {
+                        throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "bulk body exceeds " + bulkMaxBytes + " bytes");
+                    }
+                    out.write(bytes, 0, bytes.length);
+                    return out;
+                })
+                .publishOn(Schedulers.boundedElastic())
+                .map(out -> {
+                    try {
+                        return coffeeBulkLoader.load(new ByteArrayInputStream(out.toByteArray()));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    private static byte[] copy(DataBuffer buffer) {
+        try {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            return bytes;
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    @PostMapping("/upload")
+    public Mono<StoredFile> upload(@RequestPart("file") FilePart file) {
+        return store(file);
+    }
+
+    @PostMapping("/upload1")
+    public Mono<StoredFile> upload1(@RequestPart("file") FilePart file) {
+        return store(file);
+    }
+
+    /**
+     * 最多uploadParallelism个文件同时写入, 结果按请求中的顺序返回
+     * @param exchange
+     * @return
+     */
+    @PostMapping("/upload2")
+    public Mono<List<StoredFile>> upload2(ServerWebExchange exchange) {
+        return exchange.getMultipartData()
+                .flatMapIterable(parts -> parts.toSingleValueMap().values())
+                .ofType(FilePart.class)
+                .flatMapSequential(this::store, uploadParallelism)
+                .collectList();
+    }
+
+    @PostMapping("/upload3")
+    public Mono<CoffeeFile> upload3(@RequestPart("file") FilePart file, CoffeeFile coffeeFile) {
+        return store(file).map(stored -> {
+            coffeeFile.setFileName(stored.getFileName());
+            coffeeFile.setFileId(stored.getId());
+            coffeeFile.setSize(stored.getSize());
+            coffeeFile.setSha256(stored.getSha256());
+            return coffeeFile;
+        });
+    }
+
+    /**
+     * 写入需要等待日志fsync完成, 在boundedElastic线程上执行, 不阻塞Netty的事件循环线程
+     */
+    private Mono<Coffee> save(Coffee coffee) {
+        return Mono.fromCallable(() -> coffeeRepository.save(coffee)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<StoredFile> store(FilePart file) {
+        MediaType contentType = file.headers().getContentType();
+        return uploadStorage.store(file.filename(), contentType == null ? null : contentType.toString(), file.content());
+    }
+}
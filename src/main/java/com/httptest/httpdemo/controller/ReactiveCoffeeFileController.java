@@ -0,0 +1,86 @@
+package com.httptest.httpdemo.controller;
+
+import com.httptest.httpdemo.model.StoredFile;
+import com.httptest.httpdemo.storage.UploadStorage;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+
+/**
+ * CoffeeFileController的WebFlux版本, Range/If-Range/ETag处理与servlet版本共用FileRanges
+ * 文件内容通过ZeroCopyHttpOutputMessage写出, Netty下使用sendfile
+ */
+@RestController
+@RequestMapping("/coffee/files")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCoffeeFileController {
+
+    private final UploadStorage uploadStorage;
+
+    public ReactiveCoffeeFileController(UploadStorage uploadStorage) {
+        this.uploadStorage = uploadStorage;
+    }
+
+    @GetMapping("/{id}")
+    public Mono<Void> download(@PathVariable String id, ServerWebExchange exchange) {
+        StoredFile file = uploadStorage.find(id);
+        if (file == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        ServerHttpRequest request = exchange.getRequest();
+        ServerHttpResponse response = exchange.getResponse();
+        String etag = FileRanges.etag(file);
+        if (exchange.checkNotModified(etag)) {
+            return response.setComplete();
+        }
+
+        FileRanges.Selection selection = FileRanges.select(request.getHeaders().getFirst(HttpHeaders.RANGE),
+                request.getHeaders().getFirst(HttpHeaders.IF_RANGE), etag, file.getSize());
+        HttpHeaders headers = response.getHeaders();
+        String contentRange = selection.contentRange();
+        if (contentRange != null) {
+            headers.set(HttpHeaders.CONTENT_RANGE, contentRange);
+        }
+        response.setStatusCode(selection.getStatus());
+        if (!selection.isSatisfiable()) {
+            return response.setComplete();
+        }
+
+        long start = selection.getStart();
+        long count = selection.getCount();
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.setContentType(FileRanges.contentType(file));
+        headers.setContentDisposition(FileRanges.contentDisposition(file, id));
+        headers.setContentLength(count);
+        if (request.getMethod() == HttpMethod.HEAD || count == 0) {
+            return response.setComplete();
+        }
+        return ((ZeroCopyHttpOutputMessage) response).writeWith(uploadStorage.path(file), start, count);
+    }
+
+    /**
+     * 删除上传记录, 内容没有其他记录引用时一起删除
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> delete(@PathVariable String id) throws IOException {
+        if (!uploadStorage.delete(id)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        return ResponseEntity.noContent().build();
+    }
+}
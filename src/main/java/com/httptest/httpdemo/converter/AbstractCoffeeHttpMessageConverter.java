@@ -0,0 +1,93 @@
+package com.httptest.httpdemo.converter;
+
+import com.httptest.httpdemo.model.Coffee;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Coffee/CoffeeFile及其列表的专用转换器基类, 其他类型交给后续的转换器处理
+ */
+public abstract class AbstractCoffeeHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    protected AbstractCoffeeHttpMessageConverter(MediaType... supportedMediaTypes) {
+        super(supportedMediaTypes);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return Coffee.class.isAssignableFrom(clazz);
+    }
+
+    /**
+     * 列表的元素类型已由canWrite(Type, Class, MediaType)校验, 这里只按值的类型判断
+     */
+    @Override
+    public List<MediaType> getSupportedMediaTypes(Class<?> clazz) {
+        return supports(clazz) || Collection.class.isAssignableFrom(clazz) ? getSupportedMediaTypes() : Collections.emptyList();
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return isSupportedType(type) && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (type == null || type instanceof Class) {
+            return supports(clazz) && canWrite(mediaType);
+        }
+        return isSupportedType(type) && canWrite(mediaType);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return read(clazz, null, inputMessage);
+    }
+
+    private boolean isSupportedType(Type type) {
+        if (type instanceof Class) {
+            return supports((Class<?>) type);
+        }
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) type;
+            Type element = parameterized.getActualTypeArguments()[0];
+            if (element instanceof WildcardType) {
+                element = ((WildcardType) element).getUpperBounds()[0];
+            }
+            return isCollection(type) && element instanceof Class && supports((Class<?>) element);
+        }
+        return false;
+    }
+
+    /**
+     * 列表按List读取, 只支持List/Collection/Iterable声明的类型
+     */
+    protected static boolean isCollection(Type type) {
+        return type instanceof ParameterizedType
+                && ((ParameterizedType) type).getRawType() instanceof Class
+                && ((Class<?>) ((ParameterizedType) type).getRawType()).isAssignableFrom(List.class);
+    }
+
+    /**
+     * 读取的目标类型, 列表时为元素类型
+     */
+    @SuppressWarnings("unchecked")
+    protected static Class<? extends Coffee> targetClass(Type type) {
+        if (type instanceof ParameterizedType) {
+            type = ((ParameterizedType) type).getActualTypeArguments()[0];
+            if (type instanceof WildcardType) {
+                type = ((WildcardType) type).getUpperBounds()[0];
+            }
+        }
+        return type instanceof Class && Coffee.class.isAssignableFrom((Class<?>) type) ? (Class<? extends Coffee>) type : Coffee.class;
+    }
+}
@@ -0,0 +1,294 @@
+package com.httptest.httpdemo.converter;
+
+import com.httptest.httpdemo.model.Coffee;
+import com.httptest.httpdemo.model.CoffeeFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Coffee/CoffeeFile二进制编码
+ * varint为LEB128变长整数, zigzag表示先做zigzag编码再按varint写出
+ * <pre>
+ * 单条记录: [byte 类型 0=Coffee 1=CoffeeFile][string id][string name][decimal price]
+ *          CoffeeFile追加 [string fileName][string fileId][nullable long size][string sha256]
+ * 列表:     [varint 条数][记录...]
+ * string:  [varint 字节数+1, 0表示null][UTF-8字节]
+ * decimal: [byte 0=null 1=long 2=大数][zigzag 非标度值 | varint 字节数 + 补码字节][zigzag scale]
+ * nullable long: [varint 值+1, 0表示null]
+ * </pre>
+ * 编解码直接操作byte[], 不经过DataOutput/DataInput的逐字节调用
+ */
+public final class CoffeeBinaryCodec {
+
+    private static final byte TYPE_COFFEE = 0;
+    private static final byte TYPE_COFFEE_FILE = 1;
+
+    private static final byte DECIMAL_NULL = 0;
+    private static final byte DECIMAL_LONG = 1;
+    private static final byte DECIMAL_BIG = 2;
+
+    private CoffeeBinaryCodec() {
+    }
+
+    public static byte[] encode(Coffee coffee) {
+        Writer writer = new Writer(64);
+        writer.coffee(coffee);
+        return writer.toByteArray();
+    }
+
+    public static void write(Coffee coffee, OutputStream out) throws IOException {
+        Writer writer = new Writer(64);
+        writer.coffee(coffee);
+        out.write(writer.buf, 0, writer.pos);
+    }
+
+    public static void writeAll(Collection<? extends Coffee> coffees, OutputStream out) throws IOException {
+        Writer writer = new Writer(16 + 48 * coffees.size());
+        writer.varLong(coffees.size());
+        for (Coffee coffee : coffees) {
+            writer.coffee(coffee);
+        }
+        out.write(writer.buf, 0, writer.pos);
+    }
+
+    public static Coffee decode(byte[] bytes, int offset, int length) throws IOException {
+        Reader reader = new Reader(bytes, offset, offset + length);
+        return reader.coffee();
+    }
+
+    public static Coffee read(InputStream in) throws IOException {
+        byte[] bytes = readFully(in);
+        return decode(bytes, 0, bytes.length);
+    }
+
+    public static List<Coffee> readAll(InputStream in) throws IOException {
+        byte[] bytes = readFully(in);
+        Reader reader = new Reader(bytes, 0, bytes.length);
+        int count = reader.length();
+        List<Coffee> list = new ArrayList<>(Math.min(count, 1024));
+        for (int i = 0; i < count; i++) {
+            list.add(reader.coffee());
+        }
+        return list;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        byte[] buf = new byte[256];
+        int pos = 0;
+        int n;
+        while ((n = in.read(buf, pos, buf.length - pos)) != -1) {
+            pos += n;
+            if (pos == buf.length) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+        }
+        return pos == buf.length ? buf : Arrays.copyOf(buf, pos);
+    }
+
+    private static final class Writer {
+
+        private byte[] buf;
+        private int pos;
+
+        Writer(int capacity) {
+            this.buf = new byte[capacity];
+        }
+
+        void coffee(Coffee coffee) {
+            boolean file = coffee instanceof CoffeeFile;
+            ensure(1);
+            buf[pos++] = file ? TYPE_COFFEE_FILE : TYPE_COFFEE;
+            string(coffee.getId());
+            string(coffee.getName());
+            decimal(coffee.getPrice());
+            if (file) {
+                CoffeeFile coffeeFile = (CoffeeFile) coffee;
+                string(coffeeFile.getFileName());
+                string(coffeeFile.getFileId());
+                //size非负, 0表示null
+                varLong(coffeeFile.getSize() == null ? 0 : coffeeFile.getSize() + 1);
+                string(coffeeFile.getSha256());
+            }
+        }
+
+        void string(String value) {
+            if (value == null) {
+                varLong(0);
+                return;
+            }
+            int chars = value.length();
+            for (int i = 0; i < chars; i++) {
+                if (value.charAt(i) >= 0x80) {
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    varLong(bytes.length + 1L);
+                    ensure(bytes.length);
+                    System.arraycopy(bytes, 0, buf, pos, bytes.length);
+                    pos += bytes.length;
+                    return;
+                }
+            }
+            //纯ASCII直接按字节写入
+            varLong(chars + 1L);
+            ensure(chars);
+            for (int i = 0; i < chars; i++) {
+                buf[pos++] = (byte) value.charAt(i);
+            }
+        }
+
+        void decimal(BigDecimal value) {
+            ensure(1);
+            if (value == null) {
+                buf[pos++] = DECIMAL_NULL;
+                return;
+            }
+            BigInteger unscaled = value.unscaledValue();
+            if (unscaled.bitLength() < 64) {
+                buf[pos++] = DECIMAL_LONG;
+                varLong(zigzag(unscaled.longValue()));
+            } else {
+                buf[pos++] = DECIMAL_BIG;
+                byte[] bytes = unscaled.toByteArray();
+                varLong(bytes.length);
+                ensure(bytes.length);
+                System.arraycopy(bytes, 0, buf, pos, bytes.length);
+                pos += bytes.length;
+            }
+            varLong(zigzag(value.scale()));
+        }
+
+        void varLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[pos++] = (byte) value;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+
+        private void ensure(int n) {
+            if (pos + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+            }
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] buf;
+        private final int limit;
+        private int pos;
+
+        Reader(byte[] buf, int offset, int limit) {
+            this.buf = buf;
+            this.pos = offset;
+            this.limit = limit;
+        }
+
+        Coffee coffee() throws IOException {
+            byte type = readByte();
+            Coffee coffee;
+            if (type == TYPE_COFFEE) {
+                coffee = new Coffee();
+            } else if (type == TYPE_COFFEE_FILE) {
+                coffee = new CoffeeFile();
+            } else {
+                throw new IOException("Unknown record type " + type);
+            }
+            coffee.setId(string());
+            coffee.setName(string());
+            coffee.setPrice(decimal());
+            if (type == TYPE_COFFEE_FILE) {
+                CoffeeFile coffeeFile = (CoffeeFile) coffee;
+                coffeeFile.setFileName(string());
+                coffeeFile.setFileId(string());
+                long size = varLong();
+                coffeeFile.setSize(size == 0 ? null : size - 1);
+                coffeeFile.setSha256(string());
+            }
+            return coffee;
+        }
+
+        String string() throws IOException {
+            int length = length();
+            if (length == 0) {
+                return null;
+            }
+            int n = length - 1;
+            check(n);
+            String value = new String(buf, pos, n, StandardCharsets.UTF_8);
+            pos += n;
+            return value;
+        }
+
+        BigDecimal decimal() throws IOException {
+            byte kind = readByte();
+            switch (kind) {
+                case DECIMAL_NULL:
+                    return null;
+                case DECIMAL_LONG:
+                    long unscaled = unzigzag(varLong());
+                    return BigDecimal.valueOf(unscaled, (int) unzigzag(varLong()));
+                case DECIMAL_BIG:
+                    int n = length();
+                    check(n);
+                    BigInteger big = new BigInteger(Arrays.copyOfRange(buf, pos, pos + n));
+                    pos += n;
+                    return new BigDecimal(big, (int) unzigzag(varLong()));
+                default:
+                    throw new IOException("Unknown decimal kind " + kind);
+            }
+        }
+
+        int length() throws IOException {
+            long length = varLong();
+            if (length < 0 || length > Integer.MAX_VALUE) {
+                throw new IOException("Invalid length " + length);
+            }
+            return (int) length;
+        }
+
+        long varLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        private byte readByte() throws IOException {
+            check(1);
+            return buf[pos++];
+        }
+
+        private void check(int n) throws IOException {
+            if (n > limit - pos) {
+                throw new IOException("Unexpected end of message");
+            }
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
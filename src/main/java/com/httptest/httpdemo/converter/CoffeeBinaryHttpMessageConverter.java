@@ -0,0 +1,65 @@
+package com.httptest.httpdemo.converter;
+
+import com.httptest.httpdemo.model.Coffee;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * application/x-coffee-bin 与 Coffee/CoffeeFile及其列表之间的转换, 编码格式见CoffeeBinaryCodec
+ */
+public class CoffeeBinaryHttpMessageConverter extends AbstractCoffeeHttpMessageConverter {
+
+    public static final String COFFEE_BINARY_VALUE = "application/x-coffee-bin";
+    public static final MediaType COFFEE_BINARY = MediaType.valueOf(COFFEE_BINARY_VALUE);
+
+    public CoffeeBinaryHttpMessageConverter() {
+        super(COFFEE_BINARY);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        InputStream in = inputMessage.getBody();
+        Class<? extends Coffee> target = targetClass(type);
+        try {
+            if (isCollection(type)) {
+                List<Coffee> coffees = CoffeeBinaryCodec.readAll(in);
+                for (Coffee coffee : coffees) {
+                    checkType(coffee, target, inputMessage);
+                }
+                return coffees;
+            }
+            return checkType(CoffeeBinaryCodec.read(in), target, inputMessage);
+        } catch (IOException e) {
+            throw new HttpMessageNotReadableException("Invalid coffee binary message: " + e.getMessage(), e, inputMessage);
+        }
+    }
+
+    /**
+     * 解码的类型由消息中的类型字节决定, 与目标类型不符时按请求体错误处理
+     */
+    private static Coffee checkType(Coffee coffee, Class<? extends Coffee> target, HttpInputMessage inputMessage) {
+        if (!target.isInstance(coffee)) {
+            throw new HttpMessageNotReadableException("Coffee binary message contains " + coffee.getClass().getSimpleName()
+                    + ", expected " + target.getSimpleName(), inputMessage);
+        }
+        return coffee;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage) throws IOException {
+        if (value instanceof Collection) {
+            CoffeeBinaryCodec.writeAll((Collection<? extends Coffee>) value, outputMessage.getBody());
+        } else {
+            CoffeeBinaryCodec.write((Coffee) value, outputMessage.getBody());
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.httptest.httpdemo.converter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.httptest.httpdemo.model.Coffee;
+import com.httptest.httpdemo.model.CoffeeFile;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Coffee/CoffeeFile的json流式编解码, 按字段手写, 不使用反射和中间树
+ * 输出与Jackson默认序列化逐字节一致: 字段顺序与声明顺序相同(父类字段在前), null字段输出null, price按BigDecimal.toString()输出;
+ * 读取时与Jackson默认反序列化一致: 忽略未知字段, 标量可转为字符串, price可以是数字或字符串
+ */
+public final class CoffeeJsonCodec {
+
+    private CoffeeJsonCodec() {
+    }
+
+    public static void write(Coffee coffee, JsonGenerator generator) throws IOException {
+        if (coffee == null) {
+            generator.writeNull();
+            return;
+        }
+        generator.writeStartObject();
+        writeString(generator, "id", coffee.getId());
+        writeString(generator, "name", coffee.getName());
+        generator.writeFieldName("price");
+        if (coffee.getPrice() == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(coffee.getPrice());
+        }
+        if (coffee instanceof CoffeeFile) {
+            CoffeeFile coffeeFile = (CoffeeFile) coffee;
+            writeString(generator, "fileName", coffeeFile.getFileName());
+            writeString(generator, "fileId", coffeeFile.getFileId());
+            generator.writeFieldName("size");
+            if (coffeeFile.getSize() == null) {
+                generator.writeNull();
+            } else {
+                generator.writeNumber(coffeeFile.getSize());
+            }
+            writeString(generator, "sha256", coffeeFile.getSha256());
+        }
+        generator.writeEndObject();
+    }
+
+    public static void writeAll(Collection<? extends Coffee> coffees, JsonGenerator generator) throws IOException {
+        generator.writeStartArray();
+        for (Coffee coffee : coffees) {
+            write(coffee, generator);
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * 从当前位置读取一个对象, 读取后parser停在END_OBJECT上
+     */
+    public static Coffee read(JsonParser parser, Class<? extends Coffee> type) throws IOException {
+        JsonToken token = parser.currentToken() != null ? parser.currentToken() : parser.nextToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected START_OBJECT for " + type.getSimpleName() + " but was " + token);
+        }
+        boolean file = type == CoffeeFile.class;
+        Coffee coffee = file ? new CoffeeFile() : new Coffee();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "id":
+                    coffee.setId(readString(parser, value));
+                    break;
+                case "name":
+                    coffee.setName(readString(parser, value));
+                    break;
+                case "price":
+                    coffee.setPrice(readDecimal(parser, value));
+                    break;
+                default:
+                    if (!file || !readFileField((CoffeeFile) coffee, field, parser, value)) {
+                        parser.skipChildren();
+                    }
+            }
+        }
+        return coffee;
+    }
+
+    public static List<Coffee> readAll(JsonParser parser, Class<? extends Coffee> type) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "Expected START_ARRAY but was " + token);
+        }
+        List<Coffee> list = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            list.add(read(parser, type));
+        }
+        return list;
+    }
+
+    private static boolean readFileField(CoffeeFile coffeeFile, String field, JsonParser parser, JsonToken value) throws IOException {
+        switch (field) {
+            case "fileName":
+                coffeeFile.setFileName(readString(parser, value));
+                return true;
+            case "fileId":
+                coffeeFile.setFileId(readString(parser, value));
+                return true;
+            case "size":
+                coffeeFile.setSize(readLong(parser, value));
+                return true;
+            case "sha256":
+                coffeeFile.setSha256(readString(parser, value));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static void writeString(JsonGenerator generator, String field, String value) throws IOException {
+        if (value == null) {
+            generator.writeNullField(field);
+        } else {
+            generator.writeStringField(field, value);
+        }
+    }
+
+    private static String readString(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token.isScalarValue()) {
+            return parser.getText();
+        }
+        throw new JsonParseException(parser, "Cannot read String from " + token);
+    }
+
+    private static BigDecimal readDecimal(JsonParser parser, JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDecimalValue();
+            case VALUE_STRING:
+                String text = parser.getText().trim();
+                if (text.isEmpty()) {
+                    return null;
+                }
+                try {
+                    return new BigDecimal(text);
+                } catch (NumberFormatException e) {
+                    throw new JsonParseException(parser, "Cannot read BigDecimal from \"" + text + "\"");
+                }
+            default:
+                throw new JsonParseException(parser, "Cannot read BigDecimal from " + token);
+        }
+    }
+
+    private static Long readLong(JsonParser parser, JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_NUMBER_INT:
+                return parser.getLongValue();
+            case VALUE_STRING:
+                String text = parser.getText().trim();
+                if (text.isEmpty()) {
+                    return null;
+                }
+                try {
+                    return Long.parseLong(text);
+                } catch (NumberFormatException e) {
+                    throw new JsonParseException(parser, "Cannot read Long from \"" + text + "\"");
+                }
+            default:
+                throw new JsonParseException(parser, "Cannot read Long from " + token);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.httptest.httpdemo.converter;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.httptest.httpdemo.model.Coffee;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+/**
+ * Coffee/CoffeeFile及其列表的json转换器, 使用CoffeeJsonCodec直接读写流, 排在Jackson转换器之前优先使用
+ * JsonFactory取自应用的ObjectMapper, 保持相同的解析/生成特性
+ */
+public class CoffeeJsonHttpMessageConverter extends AbstractCoffeeHttpMessageConverter {
+
+    private final JsonFactory jsonFactory;
+
+    public CoffeeJsonHttpMessageConverter(JsonFactory jsonFactory) {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+        this.jsonFactory = jsonFactory;
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(inputMessage.getBody())) {
+            return isCollection(type) ? CoffeeJsonCodec.readAll(parser, targetClass(type)) : CoffeeJsonCodec.read(parser, targetClass(type));
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotReadableException("JSON parse error: " + e.getOriginalMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(outputMessage.getBody(), JsonEncoding.UTF8)) {
+            if (value instanceof Collection) {
+                CoffeeJsonCodec.writeAll((Collection<? extends Coffee>) value, generator);
+            } else {
+                CoffeeJsonCodec.write((Coffee) value, generator);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.httptest.httpdemo.limit;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按延迟梯度调整的并发数限制
+ * shortRtt为最近约10个请求耗时的指数平均, longRtt为约600个请求的指数平均, 作为无排队时的基准
+ * gradient = 1.5 * longRtt / shortRtt, 限制在[0.5, 1]之间; 延迟上升说明请求开始排队, 按比例减小limit,
+ * 延迟正常时每个请求增加约sqrt(limit)*0.2, 新值为 limit * gradient + sqrt(limit) 的平滑
+ * 进行中的请求数不到limit的一半时不调整, 避免低负载下limit无限增长
+ * 持续过载后shortRtt长期高于longRtt, longRtt逐渐向shortRtt靠近, 负载下降后不会一直压低limit
+ */
+public class AdaptiveLimiter {
+
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double SHORT_FACTOR = 2.0 / (10 + 1);
+    private static final double LONG_FACTOR = 2.0 / (600 + 1);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile double limit;
+    private double shortRtt;
+    private double longRtt;
+
+    public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("require 1 <= minLimit <= maxLimit, got " + minLimit + ", " + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * 进行中的请求数未达到limit时占用一个名额, 成功后必须调用release
+     * @return 是否放行
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                accepted.increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 释放名额并以本次请求的耗时调整limit
+     * @param startNanos tryAcquire前的System.nanoTime()
+     */
+    public void release(long startNanos) {
+        int current = inFlight.getAndDecrement();
+        sample(System.nanoTime() - startNanos, current);
+    }
+
+    synchronized void sample(long rttNanos, int inFlight) {
+        if (longRtt == 0) {
+            shortRtt = rttNanos;
+            longRtt = rttNanos;
+            return;
+        }
+        shortRtt += (rttNanos - shortRtt) * SHORT_FACTOR;
+        longRtt += (rttNanos - longRtt) * LONG_FACTOR;
+        if (longRtt / shortRtt > 2) {
+            //延迟已明显下降, longRtt尽快跟上
+            longRtt *= 0.95;
+        }
+        double current = limit;
+        if (inFlight < current / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+        double newLimit = current * gradient + Math.sqrt(current);
+        newLimit = current * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("limit", getLimit());
+        stats.put("inFlight", getInFlight());
+        stats.put("accepted", getAccepted());
+        stats.put("rejected", getRejected());
+        stats.put("shortRttMillis", shortRtt / TimeUnit.MILLISECONDS.toNanos(1));
+        stats.put("longRttMillis", longRtt / TimeUnit.MILLISECONDS.toNanos(1));
+        return stats;
+    }
+}
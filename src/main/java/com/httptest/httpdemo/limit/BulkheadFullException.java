@@ -0,0 +1,24 @@
+package com.httptest.httpdemo.limit;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * 隔离的线程池或字节预算已满, 返回503和Retry-After
+ */
+public class BulkheadFullException extends ResponseStatusException {
+
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    public BulkheadFullException(String reason) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, reason);
+    }
+
+    @Override
+    public HttpHeaders getResponseHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+        return headers;
+    }
+}
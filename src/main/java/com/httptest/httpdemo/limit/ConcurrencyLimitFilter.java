@@ -0,0 +1,80 @@
+package com.httptest.httpdemo.limit;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * /coffee请求的准入控制, 所属分组的进行中请求数达到limit时直接返回503和Retry-After, 不进入Tomcat后续的排队和处理
+ * 放在ResponseCacheFilter之前, 缓存命中的请求也占用名额, 耗时计入所属分组; /coffee/_stats, /coffee/_metrics等运行状态接口不受限制
+ * 异步请求在异步处理完成时释放名额
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    /**
+     * 请求被拒绝时设置的请求属性
+     */
+    public static final String REJECTED_ATTRIBUTE = ConcurrencyLimitFilter.class.getName() + ".REJECTED";
+
+    private static final String INTERNAL_PREFIX = "/coffee/_";
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private final ConcurrencyLimits concurrencyLimits;
+
+    public ConcurrencyLimitFilter(ConcurrencyLimits concurrencyLimits) {
+        this.concurrencyLimits = concurrencyLimits;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (path.startsWith(INTERNAL_PREFIX)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        AdaptiveLimiter limiter = concurrencyLimits.get(request.getMethod(), path);
+        long start = System.nanoTime();
+        if (!limiter.tryAcquire()) {
+            request.setAttribute(REJECTED_ATTRIBUTE, Boolean.TRUE);
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+            return;
+        }
+        boolean async = false;
+        try {
+            chain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        limiter.release(start);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+                async = true;
+            }
+        } finally {
+            if (!async) {
+                limiter.release(start);
+            }
+        }
+    }
+}
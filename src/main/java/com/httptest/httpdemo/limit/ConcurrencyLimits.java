@@ -0,0 +1,96 @@
+package com.httptest.httpdemo.limit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * /coffee接口按分组的并发数限制, 分组之间互不影响, 慢速上传占满名额时读接口仍可正常处理
+ * upload: /coffee/upload*, read: 其他GET/HEAD, write: 其他写请求
+ */
+@Component
+public class ConcurrencyLimits {
+
+    public static final String UPLOAD = "upload";
+    public static final String READ = "read";
+    public static final String WRITE = "write";
+
+    private static final String UPLOAD_PREFIX = "/coffee/upload";
+
+    private final boolean enabled;
+    private final Map<String, AdaptiveLimiter> limiters = new LinkedHashMap<>();
+
+    public ConcurrencyLimits(@Value("${coffee.limit.enabled:false}") boolean enabled,
+                             @Value("${coffee.limit.initial:50}") int initial,
+                             @Value("${coffee.limit.min:8}") int min,
+                             @Value("${coffee.limit.max:500}") int max) {
+        this.enabled = enabled;
+        limiters.put(UPLOAD, new AdaptiveLimiter(initial, min, max));
+        limiters.put(READ, new AdaptiveLimiter(initial, min, max));
+        limiters.put(WRITE, new AdaptiveLimiter(initial, min, max));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param method 请求方法
+     * @param path 不含context path的请求路径
+     * @return 所属分组的限制
+     */
+    public AdaptiveLimiter get(String method, String path) {
+        if (path.startsWith(UPLOAD_PREFIX)) {
+            return limiters.get(UPLOAD);
+        }
+        if ("GET".equals(method) || "HEAD".equals(method)) {
+            return limiters.get(READ);
+        }
+        return limiters.get(WRITE);
+    }
+
+    public AdaptiveLimiter group(String name) {
+        return limiters.get(name);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        for (Map.Entry<String, AdaptiveLimiter> entry : limiters.entrySet()) {
+            stats.put(entry.getKey(), entry.getValue().stats());
+        }
+        return stats;
+    }
+
+    /**
+     * Prometheus文本格式, 未启用时为空
+     */
+    public String prometheus() {
+        if (!enabled) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder(1024);
+        out.append("# HELP coffee_concurrency_limit Current concurrency limit by endpoint group\n");
+        out.append("# TYPE coffee_concurrency_limit gauge\n");
+        for (Map.Entry<String, AdaptiveLimiter> entry : limiters.entrySet()) {
+            sample(out, "coffee_concurrency_limit", entry.getKey(), entry.getValue().getLimit());
+        }
+        out.append("# HELP coffee_concurrency_in_flight Requests in flight by endpoint group\n");
+        out.append("# TYPE coffee_concurrency_in_flight gauge\n");
+        for (Map.Entry<String, AdaptiveLimiter> entry : limiters.entrySet()) {
+            sample(out, "coffee_concurrency_in_flight", entry.getKey(), entry.getValue().getInFlight());
+        }
+        out.append("# HELP coffee_concurrency_rejected_total Requests rejected with 503 by endpoint group\n");
+        out.append("# TYPE coffee_concurrency_rejected_total counter\n");
+        for (Map.Entry<String, AdaptiveLimiter> entry : limiters.entrySet()) {
+            sample(out, "coffee_concurrency_rejected_total", entry.getKey(), entry.getValue().getRejected());
+        }
+        return out.toString();
+    }
+
+    private static void sample(StringBuilder out, String name, String group, long value) {
+        out.append(name).append("{group=\"").append(group).append("\"} ").append(value).append('\n');
+    }
+}
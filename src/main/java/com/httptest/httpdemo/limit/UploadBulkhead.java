@@ -0,0 +1,110 @@
+package com.httptest.httpdemo.limit;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 上传接口的隔离线程池, 上传请求以WebAsyncTask异步处理, 读取和保存请求体不占用Tomcat线程, 大量上传时读接口仍有线程可用
+ * 执行中和排队的请求数不超过threads + queue, 请求体字节数(Content-Length)之和不超过maxBytes, 超出时直接返回503
+ * 单个请求超过maxBytes时只在没有其他上传时接受, 大小由spring.servlet.multipart的上限限制, 超过时返回413; chunked请求长度未知, 只受请求数限制
+ * 需要spring.servlet.multipart.resolve-lazily=true, 否则multipart请求体在进入处理方法前已在Tomcat线程上解析
+ */
+@Component
+public class UploadBulkhead implements DisposableBean {
+
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    private final int threads;
+    private final int maxTasks;
+    private final long maxBytes;
+    private final long timeout;
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private int tasks;
+    private long bytes;
+
+    public UploadBulkhead(@Value("${coffee.upload.bulkhead.threads:4}") int threads,
+                          @Value("${coffee.upload.bulkhead.queue:16}") int queue,
+                          @Value("${coffee.upload.bulkhead.max-bytes:268435456}") long maxBytes,
+                          @Value("${coffee.upload.bulkhead.timeout:600000}") long timeout) {
+        this.threads = threads;
+        this.maxTasks = threads + queue;
+        this.maxBytes = maxBytes;
+        this.timeout = timeout;
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("upload-request-");
+        executor.setDaemon(true);
+        executor.initialize();
+    }
+
+    /**
+     * 占用一个名额和请求体长度的字节预算, 在隔离线程池上执行task, 完成后释放
+     * @param request 当前请求, 取Content-Length
+     * @param task 读取请求体并处理
+     * @return 交给Spring MVC异步执行的任务
+     * @throws BulkheadFullException 名额或字节预算已满
+     */
+    public <T> WebAsyncTask<T> submit(HttpServletRequest request, Callable<T> task) {
+        long length = Math.max(0, request.getContentLengthLong());
+        if (!tryAcquire(length)) {
+            rejected.increment();
+            throw new BulkheadFullException("Too many uploads in progress");
+        }
+        accepted.increment();
+        return new WebAsyncTask<>(timeout, executor, () -> {
+            try {
+                return task.call();
+            } catch (MaxUploadSizeExceededException e) {
+                //请求体在任务中才解析, 超过spring.servlet.multipart的大小上限时在这里抛出
+                throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, e.getMessage());
+            } finally {
+                release(length);
+            }
+        });
+    }
+
+    synchronized boolean tryAcquire(long length) {
+        if (tasks >= maxTasks || (bytes > 0 && bytes + length > maxBytes)) {
+            return false;
+        }
+        tasks++;
+        bytes += length;
+        return true;
+    }
+
+    synchronized void release(long length) {
+        tasks--;
+        bytes -= length;
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", threads);
+        stats.put("active", executor.getActiveCount());
+        stats.put("inFlight", tasks);
+        stats.put("maxInFlight", maxTasks);
+        stats.put("bytes", bytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("accepted", accepted.sum());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
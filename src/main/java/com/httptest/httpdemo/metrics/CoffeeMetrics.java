@@ -0,0 +1,135 @@
+package com.httptest.httpdemo.metrics;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * /coffee接口按处理方法统计的指标, 由CoffeeMetricsFilter(servlet)或CoffeeMetricsWebFilter(reactive)记录,
+ * 以Prometheus文本格式输出
+ */
+@Component
+public class CoffeeMetrics {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * 按bean和方法比较, 请求中解析出的HandlerMethod与已缓存的相等
+     */
+    private static final ConcurrentHashMap<HandlerMethod, String> HANDLER_NAMES = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * @param handler 处理方法, 见handlerName
+     * @param status 响应状态码
+     * @param nanos 处理耗时
+     * @param requestBytes 请求体字节数, 未知时为-1
+     * @param responseBytes 响应体字节数, 未知时为-1
+     * @param upload 是否为上传接口
+     */
+    public void record(String handler, int status, long nanos, long requestBytes, long responseBytes, boolean upload) {
+        EndpointMetrics metrics = endpoints.get(handler);
+        if (metrics == null) {
+            metrics = endpoints.computeIfAbsent(handler, h -> new EndpointMetrics());
+        }
+        metrics.record(status, nanos, requestBytes, responseBytes, upload);
+    }
+
+    /**
+     * 指标的handler标签: 控制器类名.方法名, 不同控制器中的同名方法分开统计
+     * 每个处理方法只拼接一次, 之后每个请求直接取缓存的标签
+     */
+    public static String handlerName(HandlerMethod handlerMethod) {
+        String name = HANDLER_NAMES.get(handlerMethod);
+        if (name == null) {
+            name = HANDLER_NAMES.computeIfAbsent(handlerMethod,
+                    h -> h.getBeanType().getSimpleName() + "." + h.getMethod().getName());
+        }
+        return name;
+    }
+
+    public EndpointMetrics get(String handler) {
+        return endpoints.get(handler);
+    }
+
+    public String prometheus() {
+        Map<String, EndpointMetrics> sorted = new TreeMap<>(endpoints);
+        StringBuilder out = new StringBuilder(4096);
+
+        type(out, "coffee_http_request_duration_seconds", "histogram", "Request latency by handler method");
+        for (Map.Entry<String, EndpointMetrics> entry : sorted.entrySet()) {
+            histogram(out, "coffee_http_request_duration_seconds", entry.getKey(), entry.getValue().getLatency(), 9);
+        }
+
+        type(out, "coffee_http_requests_total", "counter", "Requests by handler method and status class");
+        for (Map.Entry<String, EndpointMetrics> entry : sorted.entrySet()) {
+            for (int statusClass = 1; statusClass <= 5; statusClass++) {
+                long count = entry.getValue().getStatusCount(statusClass);
+                if (count > 0) {
+                    out.append("coffee_http_requests_total{handler=\"").append(entry.getKey())
+                            .append("\",status=\"").append(statusClass).append("xx\"} ").append(count).append('\n');
+                }
+            }
+        }
+
+        type(out, "coffee_http_request_bytes_total", "counter", "Request body bytes by handler method");
+        for (Map.Entry<String, EndpointMetrics> entry : sorted.entrySet()) {
+            sample(out, "coffee_http_request_bytes_total", entry.getKey(), entry.getValue().getRequestBytes());
+        }
+
+        type(out, "coffee_http_response_bytes_total", "counter", "Response body bytes by handler method");
+        for (Map.Entry<String, EndpointMetrics> entry : sorted.entrySet()) {
+            sample(out, "coffee_http_response_bytes_total", entry.getKey(), entry.getValue().getResponseBytes());
+        }
+
+        type(out, "coffee_upload_bytes_total", "counter", "Uploaded bytes, rate() gives bytes per second");
+        for (Map.Entry<String, EndpointMetrics> entry : sorted.entrySet()) {
+            if (entry.getValue().getUploadBytes() > 0) {
+                sample(out, "coffee_upload_bytes_total", entry.getKey(), entry.getValue().getUploadBytes());
+            }
+        }
+
+        type(out, "coffee_upload_throughput_bytes_per_second", "histogram", "Per-request upload throughput");
+        for (Map.Entry<String, EndpointMetrics> entry : sorted.entrySet()) {
+            if (entry.getValue().getUploadBytes() > 0) {
+                histogram(out, "coffee_upload_throughput_bytes_per_second", entry.getKey(), entry.getValue().getUploadThroughput(), 0);
+            }
+        }
+        return out.toString();
+    }
+
+    private static void type(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String handler, long value) {
+        out.append(name).append("{handler=\"").append(handler).append("\"} ").append(value).append('\n');
+    }
+
+    /**
+     * Prometheus的桶为累计计数
+     * @param scale 输出单位为记录值除以10的scale次方, 纳秒输出为秒时为9
+     */
+    private static void histogram(StringBuilder out, String name, String handler, Histogram histogram, int scale) {
+        long[] bounds = histogram.bounds();
+        long[] counts = histogram.counts();
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            out.append(name).append("_bucket{handler=\"").append(handler).append("\",le=\"")
+                    .append(i < bounds.length ? format(bounds[i], scale) : "+Inf").append("\"} ").append(cumulative).append('\n');
+        }
+        out.append(name).append("_sum{handler=\"").append(handler).append("\"} ").append(format(histogram.sum(), scale)).append('\n');
+        out.append(name).append("_count{handler=\"").append(handler).append("\"} ").append(cumulative).append('\n');
+    }
+
+    private static String format(long value, int scale) {
+        return BigDecimal.valueOf(value, scale).stripTrailingZeros().toPlainString();
+    }
+}
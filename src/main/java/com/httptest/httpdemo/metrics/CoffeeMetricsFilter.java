@@ -0,0 +1,162 @@
+package com.httptest.httpdemo.metrics;
+
+import com.httptest.httpdemo.cache.ResponseCacheFilter;
+import com.httptest.httpdemo.limit.ConcurrencyLimitFilter;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * 记录/coffee请求的指标, 放在ResponseCacheFilter之前, 缓存命中的请求记为responseCache, 超出并发数限制被拒绝的请求记为concurrencyLimit
+ * 异步请求(StreamingResponseBody等)在异步处理完成时记录
+ * 请求体字节数取自Content-Length, chunked请求不计; 响应体字节数为经过本过滤器写出的字节数, 不包括错误页
+ */
+public class CoffeeMetricsFilter extends OncePerRequestFilter {
+
+    private static final String UPLOAD_PREFIX = "/coffee/upload";
+
+    private final CoffeeMetrics coffeeMetrics;
+
+    public CoffeeMetricsFilter(CoffeeMetrics coffeeMetrics) {
+        this.coffeeMetrics = coffeeMetrics;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        long start = System.nanoTime();
+        CountingResponseWrapper wrapper = new CountingResponseWrapper(response);
+        boolean failed = true;
+        try {
+            chain.doFilter(request, wrapper);
+            failed = false;
+        } finally {
+            if (!failed && request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        record(request, wrapper, start, false);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                record(request, wrapper, start, failed);
+            }
+        }
+    }
+
+    private void record(HttpServletRequest request, CountingResponseWrapper response, long start, boolean failed) {
+        long nanos = System.nanoTime() - start;
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        coffeeMetrics.record(handler(request), failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus(),
+                nanos, request.getContentLengthLong(), response.count, path.startsWith(UPLOAD_PREFIX));
+    }
+
+    private static String handler(HttpServletRequest request) {
+        Object handler = request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+        if (handler instanceof HandlerMethod) {
+            return CoffeeMetrics.handlerName((HandlerMethod) handler);
+        }
+        if (request.getAttribute(ResponseCacheFilter.CACHE_HIT_ATTRIBUTE) != null) {
+            return "responseCache";
+        }
+        if (request.getAttribute(ConcurrencyLimitFilter.REJECTED_ATTRIBUTE) != null) {
+            return "concurrencyLimit";
+        }
+        return "unmatched";
+    }
+
+    /**
+     * 统计写出的响应体字节数
+     */
+    private static class CountingResponseWrapper extends HttpServletResponseWrapper {
+
+        private volatile long count;
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+
+        CountingResponseWrapper(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                ServletOutputStream delegate = super.getOutputStream();
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        delegate.write(b);
+                        count++;
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        delegate.write(b, off, len);
+                        count += len;
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        delegate.flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        delegate.close();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return delegate.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener writeListener) {
+                        delegate.setWriteListener(writeListener);
+                    }
+                };
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            super.flushBuffer();
+        }
+    }
+}
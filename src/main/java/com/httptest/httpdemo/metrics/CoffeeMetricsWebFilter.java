@@ -0,0 +1,58 @@
+package com.httptest.httpdemo.metrics;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * CoffeeMetricsFilter的WebFlux版本
+ * 响应体字节数取自响应的Content-Length, Flux响应不计; 不包装响应, 文件下载仍可使用zero-copy
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class CoffeeMetricsWebFilter implements WebFilter {
+
+    private static final String PREFIX = "/coffee";
+    private static final String UPLOAD_PREFIX = "/coffee/upload";
+
+    private final CoffeeMetrics coffeeMetrics;
+
+    public CoffeeMetricsWebFilter(CoffeeMetrics coffeeMetrics) {
+        this.coffeeMetrics = coffeeMetrics;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        if (!path.startsWith(PREFIX)) {
+            return chain.filter(exchange);
+        }
+        long start = System.nanoTime();
+        //响应写出后连接关闭时可能收到cancel而不是complete, 同样记录
+        return chain.filter(exchange)
+                .doOnSuccess(v -> record(exchange, path, start, status(exchange)))
+                .doOnCancel(() -> record(exchange, path, start, status(exchange)))
+                .doOnError(e -> record(exchange, path, start, e instanceof ResponseStatusException
+                        ? ((ResponseStatusException) e).getRawStatusCode() : HttpStatus.INTERNAL_SERVER_ERROR.value()));
+    }
+
+    private static int status(ServerWebExchange exchange) {
+        Integer status = exchange.getResponse().getRawStatusCode();
+        return status == null ? HttpStatus.OK.value() : status;
+    }
+
+    private void record(ServerWebExchange exchange, String path, long start, int status) {
+        long nanos = System.nanoTime() - start;
+        Object handler = exchange.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+        coffeeMetrics.record(handler instanceof HandlerMethod ? CoffeeMetrics.handlerName((HandlerMethod) handler) : "unmatched",
+                status, nanos, exchange.getRequest().getHeaders().getContentLength(),
+                exchange.getResponse().getHeaders().getContentLength(), path.startsWith(UPLOAD_PREFIX));
+    }
+}
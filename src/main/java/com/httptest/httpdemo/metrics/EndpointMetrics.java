@@ -0,0 +1,77 @@
+package com.httptest.httpdemo.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个处理方法的指标: 延迟(纳秒)、按状态码分类的请求数、请求/响应字节数, 上传接口另有每个请求的上传速率(字节/秒)
+ */
+public class EndpointMetrics {
+
+    static final long[] LATENCY_BOUNDS_NANOS = {
+            100_000L, 250_000L, 500_000L,
+            1_000_000L, 2_500_000L, 5_000_000L,
+            10_000_000L, 25_000_000L, 50_000_000L,
+            100_000_000L, 250_000_000L, 500_000_000L,
+            1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L};
+
+    static final long[] THROUGHPUT_BOUNDS = {
+            64L << 10, 256L << 10, 1L << 20, 4L << 20, 16L << 20, 64L << 20, 256L << 20, 1L << 30};
+
+    private final Histogram latency = new Histogram(LATENCY_BOUNDS_NANOS);
+    private final Histogram uploadThroughput = new Histogram(THROUGHPUT_BOUNDS);
+    /**
+     * 1xx..5xx
+     */
+    private final LongAdder[] statuses = new LongAdder[5];
+    private final LongAdder requestBytes = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+    private final LongAdder uploadBytes = new LongAdder();
+
+    public EndpointMetrics() {
+        for (int i = 0; i < statuses.length; i++) {
+            statuses[i] = new LongAdder();
+        }
+    }
+
+    public void record(int status, long nanos, long requestBytes, long responseBytes, boolean upload) {
+        latency.record(nanos);
+        int statusClass = status / 100 - 1;
+        if (statusClass >= 0 && statusClass < statuses.length) {
+            statuses[statusClass].increment();
+        }
+        if (requestBytes > 0) {
+            this.requestBytes.add(requestBytes);
+        }
+        if (responseBytes > 0) {
+            this.responseBytes.add(responseBytes);
+        }
+        if (upload && requestBytes > 0) {
+            uploadBytes.add(requestBytes);
+            uploadThroughput.record(nanos == 0 ? Long.MAX_VALUE : (long) (requestBytes * 1e9 / nanos));
+        }
+    }
+
+    public Histogram getLatency() {
+        return latency;
+    }
+
+    public Histogram getUploadThroughput() {
+        return uploadThroughput;
+    }
+
+    public long getStatusCount(int statusClass) {
+        return statuses[statusClass - 1].sum();
+    }
+
+    public long getRequestBytes() {
+        return requestBytes.sum();
+    }
+
+    public long getResponseBytes() {
+        return responseBytes.sum();
+    }
+
+    public long getUploadBytes() {
+        return uploadBytes.sum();
+    }
+}
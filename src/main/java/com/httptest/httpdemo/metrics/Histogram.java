@@ -0,0 +1,49 @@
+package com.httptest.httpdemo.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 固定桶的直方图, 每个桶一个LongAdder, 记录时无锁且不分配对象
+ * bounds为各桶的上界(包含), 最后一个桶为+Inf
+ */
+public class Histogram {
+
+    private final long[] bounds;
+    private final LongAdder[] buckets;
+    private final LongAdder sum = new LongAdder();
+
+    public Histogram(long... bounds) {
+        this.bounds = bounds.clone();
+        Arrays.sort(this.bounds);
+        this.buckets = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long value) {
+        int i = Arrays.binarySearch(bounds, value);
+        buckets[i < 0 ? -i - 1 : i].increment();
+        sum.add(value);
+    }
+
+    public long[] bounds() {
+        return bounds.clone();
+    }
+
+    /**
+     * 各桶的计数(不累加), 长度为bounds.length + 1
+     */
+    public long[] counts() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    public long sum() {
+        return sum.sum();
+    }
+}
@@ -0,0 +1,22 @@
+package com.httptest.httpdemo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * _bulk中单条记录的处理结果, index为记录在请求体中的序号
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkItemResult implements Serializable {
+    private int index;
+    private String id;
+    private int status;
+    private String error;
+}
@@ -13,4 +13,7 @@ import java.math.BigDecimal;
 @ToString(callSuper = true)
 public class CoffeeFile extends Coffee {
     private String fileName;
+    private String fileId;
+    private Long size;
+    private String sha256;
 }
@@ -0,0 +1,20 @@
+package com.httptest.httpdemo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredFile implements Serializable {
+    private String id;
+    private String fileName;
+    private String contentType;
+    private long size;
+    private String sha256;
+}
@@ -0,0 +1,27 @@
+package com.httptest.httpdemo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 断点续传的上传会话
+ * offset为从0开始连续收到的字节数, 客户端从这里继续上传; ranges为已收到的区间[start, end), 乱序上传时可能不连续
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSession implements Serializable {
+    private String id;
+    private String fileName;
+    private String contentType;
+    private long size;
+    private long offset;
+    private long received;
+    private List<long[]> ranges;
+}
@@ -0,0 +1,16 @@
+package com.httptest.httpdemo.repository;
+
+import com.httptest.httpdemo.model.Coffee;
+
+/**
+ * CoffeeRepository写入回调, 在写锁内同步调用, 实现不能阻塞
+ */
+@FunctionalInterface
+public interface CoffeeChangeListener {
+
+    /**
+     * @param previous 写入前的记录, 新增时为null
+     * @param current 写入后的记录
+     */
+    void changed(Coffee previous, Coffee current);
+}
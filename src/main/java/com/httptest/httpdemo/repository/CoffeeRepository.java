@@ -0,0 +1,273 @@
+package com.httptest.httpdemo.repository;
+
+import com.httptest.httpdemo.model.Coffee;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 内存Coffee存储
+ * 主索引: id -> Coffee, 二级索引: name -> Coffee, 有序索引: id(字典序) -> Coffee, 用于全量遍历和游标分页
+ * name不唯一, findByName返回最后写入该name的记录; 它改名后返回仍使用该name的其他记录之一
+ * 读操作无锁, 直接返回存储中的实例, 不做拷贝; 写操作串行化, 保证两个索引一致
+ * 返回的实例为只读, 调用方不要修改
+ * 配置了CoffeeStore时写入持久化: 写锁内先追加日志再修改索引, 追加失败时内存状态不变; 释放写锁后等待组提交的fsync完成再返回,
+ * 因此记录在写入磁盘前已对读操作可见; 启动时从快照和日志恢复(直接写入索引, 不通知监听器), 为空时才写入初始数据
+ * 开启延迟初始化(fast profile)时仍在启动时创建, 数据目录被占用或损坏时启动失败, 不推迟到第一个请求
+ */
+@Lazy(false)
+@Repository
+public class CoffeeRepository {
+
+    private final ConcurrentHashMap<String, Coffee> byId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Coffee> byName = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, Coffee> ordered = new ConcurrentSkipListMap<>();
+    /**
+     * name -> 使用该name的全部id, 只在写锁内访问
+     */
+    private final Map<String, Set<String>> namesakes = new HashMap<>();
+    private final Collection<Coffee> all = Collections.unmodifiableCollection(ordered.values());
+    private final List<CoffeeChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Object writeLock = new Object();
+    private final CoffeeStore store;
+
+    /**
+     * 只在内存中保存
+     */
+    public CoffeeRepository() {
+        this(null);
+    }
+
+    @Autowired
+    public CoffeeRepository(CoffeeStore store) {
+        this.store = store;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (store != null) {
+            synchronized (writeLock) {
+                store.recover(coffee -> {
+                    advanceSequence(coffee.getId());
+                    index(coffee);
+                });
+            }
+        }
+        if (byId.isEmpty()) {
+            save(Coffee.builder().name("natie").price(new BigDecimal(10)).build());
+            save(Coffee.builder().name("kaboqino").price(new BigDecimal(11)).build());
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (store != null) {
+            synchronized (writeLock) {
+                store.close(ordered.values());
+            }
+        }
+    }
+
+    public void addListener(CoffeeChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public Coffee findById(String id) {
+        return id == null ? null : byId.get(id);
+    }
+
+    public Coffee findByName(String name) {
+        return name == null ? null : byName.get(name);
+    }
+
+    /**
+     * 返回按id排序的只读视图, 迭代时不复制, 与并发写入互不阻塞(弱一致)
+     */
+    public Collection<Coffee> findAll() {
+        return all;
+    }
+
+    /**
+     * 游标分页, 返回id大于afterId的前limit条, 复杂度O(log n + limit)
+     * @param afterId 上一页最后一条的id, 为空时从头开始
+     * @param limit
+     * @return
+     */
+    public List<Coffee> findPage(String afterId, int limit) {
+        Collection<Coffee> tail = afterId == null ? ordered.values() : ordered.tailMap(afterId, false).values();
+        List<Coffee> page = new ArrayList<>(Math.min(limit, 64));
+        for (Coffee coffee : tail) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(coffee);
+        }
+        return page;
+    }
+
+    public boolean existsAfter(String id) {
+        return ordered.higherKey(id) != null;
+    }
+
+    public int count() {
+        return byId.size();
+    }
+
+    /**
+     * id为空时自动生成, 已存在则覆盖
+     * @param coffee
+     * @return 存储中的实例
+     */
+    public Coffee save(Coffee coffee) {
+        Coffee stored;
+        long position;
+        synchronized (writeLock) {
+            stored = prepare(coffee);
+            position = append(stored);
+            apply(stored);
+            snapshotIfNeeded();
+        }
+        sync(position);
+        return stored;
+    }
+
+    /**
+     * 批量保存, 整批只获取一次写锁
+     * 整批追加到CoffeeStore成功后才修改索引, 追加失败时整批都不可见
+     * @param coffees
+     * @return 与参数顺序一致的存储实例
+     */
+    public List<Coffee> saveAll(List<Coffee> coffees) {
+        List<Coffee> stored = new ArrayList<>(coffees.size());
+        long position;
+        synchronized (writeLock) {
+            for (Coffee coffee : coffees) {
+                stored.add(prepare(coffee));
+            }
+            position = store == null ? 0 : store.appendAll(stored);
+            for (Coffee saved : stored) {
+                apply(saved);
+            }
+            snapshotIfNeeded();
+        }
+        sync(position);
+        return stored;
+    }
+
+    /**
+     * 持有写锁时调用
+     * @return 提交位置, 未配置CoffeeStore时为0
+     */
+    private long append(Coffee stored) {
+        return store == null ? 0 : store.append(stored);
+    }
+
+    /**
+     * 持有写锁时调用, 日志达到大小时切换日志并生成快照, 快照需要包含已追加的记录, 因此在修改索引之后调用
+     */
+    private void snapshotIfNeeded() {
+        if (store != null && store.shouldSnapshot()) {
+            store.snapshot(ordered.values());
+        }
+    }
+
+    private void sync(long position) {
+        if (store != null && position > 0) {
+            store.sync(position);
+        }
+    }
+
+    /**
+     * 确定id并复制为存储中的实例, 不修改索引
+     */
+    private Coffee prepare(Coffee coffee) {
+        String id = coffee.getId();
+        if (!StringUtils.hasLength(id)) {
+            id = String.valueOf(sequence.incrementAndGet());
+        } else {
+            advanceSequence(id);
+        }
+        return Coffee.builder().id(id).name(coffee.getName()).price(coffee.getPrice()).build();
+    }
+
+    private void apply(Coffee stored) {
+        Coffee previous = index(stored);
+        for (CoffeeChangeListener listener : listeners) {
+            listener.changed(previous, stored);
+        }
+    }
+
+    /**
+     * @return 被替换的实例
+     */
+    private Coffee index(Coffee stored) {
+        String id = stored.getId();
+        Coffee previous = byId.put(id, stored);
+        ordered.put(id, stored);
+        if (previous != null && previous.getName() != null && !previous.getName().equals(stored.getName())) {
+            unname(previous);
+        }
+        if (stored.getName() != null) {
+            namesakes.computeIfAbsent(stored.getName(), n -> new HashSet<>()).add(id);
+            byName.put(stored.getName(), stored);
+        }
+        return previous;
+    }
+
+    /**
+     * previous改名, name索引指向它时改为指向仍使用该name的其他记录
+     */
+    private void unname(Coffee previous) {
+        String name = previous.getName();
+        Set<String> ids = namesakes.get(name);
+        if (ids != null) {
+            ids.remove(previous.getId());
+            if (ids.isEmpty()) {
+                namesakes.remove(name);
+            }
+        }
+        Coffee current = byName.get(name);
+        if (current == null || !current.getId().equals(previous.getId())) {
+            return;
+        }
+        if (ids == null || ids.isEmpty()) {
+            byName.remove(name);
+        } else {
+            byName.put(name, byId.get(ids.iterator().next()));
+        }
+    }
+
+    /**
+     * 外部指定了数字id时推进序列, 避免自动生成的id与之冲突
+     */
+    private void advanceSequence(String id) {
+        long value;
+        try {
+            value = Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            return;
+        }
+        if (value > sequence.get()) {
+            sequence.set(value);
+        }
+    }
+}
@@ -0,0 +1,536 @@
+package com.httptest.httpdemo.repository;
+
+import com.httptest.httpdemo.converter.CoffeeBinaryCodec;
+import com.httptest.httpdemo.model.Coffee;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * CoffeeRepository的持久化: 追加写的日志(log-N.wal) + 定期生成的快照(snapshot-N.bin)
+ * <pre>
+ * 文件:   [int magic][int version][记录...]
+ * 记录:   [int 长度][int CRC32][CoffeeBinaryCodec编码的Coffee]
+ * </pre>
+ * snapshot-N包含log-N之前的全部记录, 启动时读取最新的快照, 再按顺序重放不早于N的日志, 文件以mmap方式读取;
+ * 最后一个日志末尾不完整或校验失败的记录(写入时崩溃)被截断, 其他位置的损坏导致启动失败
+ * 组提交: append只把记录放入内存缓冲, sync时由第一个等待的线程写出缓冲并fsync, 期间到达的记录由下一次fsync一起提交,
+ * 每批请求共用一次fsync
+ * 当前日志超过snapshotBytes时切换到新日志, 在后台线程写出快照后删除旧的日志和快照, 重启耗时取决于快照大小而不是写入历史
+ * 数据目录以文件锁独占, 同一目录不能被两个进程同时使用
+ */
+@Slf4j
+@Component
+public class CoffeeStore {
+
+    private static final int LOG_MAGIC = 0x43574C31;
+    private static final int SNAPSHOT_MAGIC = 0x43534E31;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final Pattern FILE_NAME = Pattern.compile("(log|snapshot)-(\\d+)\\.(wal|bin)");
+
+    private final Path dir;
+    private final long snapshotBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushed = lock.newCondition();
+    private final AtomicBoolean snapshotting = new AtomicBoolean();
+    private final ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "coffee-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong syncs = new AtomicLong();
+    private final AtomicLong records = new AtomicLong();
+
+    private FileChannel lockChannel;
+    private FileLock fileLock;
+    private FileChannel channel;
+    private long generation;
+    private volatile long snapshotGeneration;
+
+    /**
+     * 待写出的记录, 由lock保护
+     */
+    private byte[] pending = new byte[4096];
+    private int pendingBytes;
+    private byte[] spare = new byte[4096];
+    /**
+     * 累计追加的字节数, 作为记录的提交位置
+     */
+    private long appended;
+    private long durable;
+    private boolean flushing;
+    private long segmentBytes;
+    private boolean closed;
+    /**
+     * 写日志失败后缓冲中的记录已丢失, 之后的sync都失败
+     */
+    private IOException failure;
+
+    public CoffeeStore(@Value("${coffee.store.dir:${coffee.data-dir}/coffee}") String dir,
+                       @Value("${coffee.store.snapshot-bytes:67108864}") long snapshotBytes) {
+        this.dir = Paths.get(dir);
+        this.snapshotBytes = snapshotBytes;
+    }
+
+    /**
+     * 读取快照和日志, 每条记录按写入顺序交给consumer, 然后打开最新的日志用于追加
+     * @param consumer
+     * @return 读取的记录数
+     * @throws IOException
+     */
+    public long recover(Consumer<Coffee> consumer) throws IOException {
+        Files.createDirectories(dir);
+        lock();
+        TreeMap<Long, Path> logs = new TreeMap<>();
+        TreeMap<Long, Path> snapshots = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                Matcher matcher = FILE_NAME.matcher(name);
+                if (matcher.matches()) {
+                    ("log".equals(matcher.group(1)) ? logs : snapshots).put(Long.parseLong(matcher.group(2)), file);
+                } else if (name.endsWith(".tmp")) {
+                    //写快照时崩溃留下的临时文件
+                    Files.delete(file);
+                }
+            }
+        }
+
+        long start = System.nanoTime();
+        long count = 0;
+        snapshotGeneration = snapshots.isEmpty() ? 0 : snapshots.lastKey();
+        if (snapshotGeneration > 0) {
+            count += replay(snapshots.lastEntry().getValue(), SNAPSHOT_MAGIC, consumer, false).records;
+        }
+        generation = Math.max(1, snapshotGeneration);
+        long end = -1;
+        for (Map.Entry<Long, Path> entry : logs.tailMap(snapshotGeneration, true).entrySet()) {
+            Replay replay = replay(entry.getValue(), LOG_MAGIC, consumer, entry.getKey().equals(logs.lastKey()));
+            count += replay.records;
+            generation = entry.getKey();
+            end = replay.end;
+        }
+        deleteBefore(snapshotGeneration);
+
+        Path file = logFile(generation);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (end < HEADER_BYTES) {
+            channel.truncate(0);
+            writeHeader(channel, LOG_MAGIC);
+            end = HEADER_BYTES;
+        } else if (end < channel.size()) {
+            log.warn("Truncating {} from {} to {} bytes, the tail was not completely written", file, channel.size(), end);
+            channel.truncate(end);
+            channel.force(false);
+        }
+        channel.position(end);
+        segmentBytes = end;
+        log.info("Recovered {} coffee records from {} in {} ms", count, dir, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return count;
+    }
+
+    /**
+     * 追加一条记录到内存缓冲, 调用方需保证与内存状态的修改顺序一致(在CoffeeRepository的写锁内调用)
+     * @param coffee
+     * @return 提交位置, 传给sync等待写入磁盘
+     */
+    public long append(Coffee coffee) {
+        return appendAll(Collections.singletonList(coffee));
+    }
+
+    /**
+     * 追加一批记录, 全部编码后一次放入缓冲, 失败时缓冲中不会留下其中的任何一条
+     * @param coffees
+     * @return 最后一条的提交位置
+     */
+    public long appendAll(List<Coffee> coffees) {
+        List<byte[]> encoded = new ArrayList<>(coffees.size());
+        int length = 0;
+        for (Coffee coffee : coffees) {
+            byte[] bytes = CoffeeBinaryCodec.encode(coffee);
+            encoded.add(bytes);
+            length += RECORD_HEADER_BYTES + bytes.length;
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("CoffeeStore is closed");
+            }
+            if (pending.length - pendingBytes < length) {
+                byte[] grown = new byte[Math.max(pending.length * 2, pendingBytes + length)];
+                System.arraycopy(pending, 0, grown, 0, pendingBytes);
+                pending = grown;
+            }
+            for (byte[] bytes : encoded) {
+                CRC32 crc = new CRC32();
+                crc.update(bytes, 0, bytes.length);
+                ByteBuffer.wrap(pending, pendingBytes, RECORD_HEADER_BYTES).putInt(bytes.length).putInt((int) crc.getValue());
+                System.arraycopy(bytes, 0, pending, pendingBytes + RECORD_HEADER_BYTES, bytes.length);
+                pendingBytes += RECORD_HEADER_BYTES + bytes.length;
+            }
+            appended += length;
+            segmentBytes += length;
+            records.addAndGet(encoded.size());
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 等待position之前的记录写入磁盘
+     * 没有进行中的fsync时由当前线程写出缓冲中的全部记录并fsync, 否则等待进行中的fsync完成后再判断
+     * @param position append返回的提交位置
+     */
+    public void sync(long position) {
+        lock.lock();
+        try {
+            while (durable < position) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Cannot write coffee log", failure);
+                }
+                if (flushing) {
+                    flushed.awaitUninterruptibly();
+                    continue;
+                }
+                flushing = true;
+                byte[] batch = pending;
+                int batchBytes = pendingBytes;
+                long target = appended;
+                pending = spare;
+                pendingBytes = 0;
+                FileChannel current = channel;
+                lock.unlock();
+                IOException error = null;
+                try {
+                    write(current, batch, batchBytes);
+                    current.force(false);
+                } catch (IOException e) {
+                    error = e;
+                    throw new UncheckedIOException("Cannot write coffee log", e);
+                } finally {
+                    lock.lock();
+                    spare = batch;
+                    flushing = false;
+                    if (error == null) {
+                        durable = target;
+                        syncs.incrementAndGet();
+                    } else {
+                        failure = error;
+                    }
+                    flushed.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 当前日志已超过snapshotBytes且没有正在写的快照
+     */
+    public boolean shouldSnapshot() {
+        lock.lock();
+        try {
+            return segmentBytes >= snapshotBytes && !snapshotting.get() && !closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 切换到新日志并在后台写出快照, 在CoffeeRepository的写锁内调用, state为此刻的全部记录
+     * @param state
+     */
+    public void snapshot(Collection<Coffee> state) {
+        if (!snapshotting.compareAndSet(false, true)) {
+            return;
+        }
+        long next;
+        try {
+            next = rotate();
+        } catch (IOException e) {
+            snapshotting.set(false);
+            throw new UncheckedIOException("Cannot rotate coffee log", e);
+        }
+        List<Coffee> copy = new ArrayList<>(state);
+        snapshotExecutor.execute(() -> {
+            try {
+                writeSnapshot(next, copy);
+            } catch (IOException e) {
+                log.error("Cannot write coffee snapshot {}", next, e);
+            } finally {
+                snapshotting.set(false);
+            }
+        });
+    }
+
+    /**
+     * 等待后台快照完成, 当前日志有记录时写出最终快照, 下次启动只需读取快照
+     * 在CoffeeRepository的写锁内调用
+     * @param state
+     */
+    public void close(Collection<Coffee> state) throws IOException {
+        snapshotExecutor.shutdown();
+        try {
+            snapshotExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            if (closed || channel == null) {
+                return;
+            }
+            if (segmentBytes > HEADER_BYTES) {
+                writeSnapshot(rotate(), new ArrayList<>(state));
+            } else {
+                flush();
+            }
+            closed = true;
+            channel.close();
+            fileLock.release();
+            lockChannel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            stats.put("generation", generation);
+            stats.put("logBytes", segmentBytes);
+            stats.put("pendingBytes", pendingBytes);
+        } finally {
+            lock.unlock();
+        }
+        stats.put("snapshotGeneration", snapshotGeneration);
+        stats.put("records", records.get());
+        stats.put("syncs", syncs.get());
+        return stats;
+    }
+
+    /**
+     * 写出缓冲并fsync当前日志, 关闭后打开下一个日志
+     * @return 新日志的序号, 即快照的序号
+     */
+    private long rotate() throws IOException {
+        lock.lock();
+        try {
+            flush();
+            channel.close();
+            generation++;
+            channel = FileChannel.open(logFile(generation), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            writeHeader(channel, LOG_MAGIC);
+            segmentBytes = HEADER_BYTES;
+            syncDirectory();
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 持有lock时调用, 等待进行中的fsync并写出剩余的缓冲
+     */
+    private void flush() throws IOException {
+        while (flushing) {
+            flushed.awaitUninterruptibly();
+        }
+        write(channel, pending, pendingBytes);
+        channel.force(false);
+        pendingBytes = 0;
+        durable = appended;
+        syncs.incrementAndGet();
+    }
+
+    private void writeSnapshot(long next, List<Coffee> state) throws IOException {
+        long start = System.nanoTime();
+        Path tmp = dir.resolve("snapshot-" + next + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(VERSION);
+            CRC32 crc = new CRC32();
+            for (Coffee coffee : state) {
+                byte[] bytes = CoffeeBinaryCodec.encode(coffee);
+                crc.reset();
+                crc.update(bytes, 0, bytes.length);
+                out.writeInt(bytes.length);
+                out.writeInt((int) crc.getValue());
+                out.write(bytes);
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(tmp, snapshotFile(next), StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+        snapshotGeneration = next;
+        deleteBefore(next);
+        log.info("Wrote coffee snapshot {} with {} records in {} ms", next, state.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * 删除序号小于generation的日志和快照, 它们的内容已包含在snapshot-generation中
+     */
+    private void deleteBefore(long generation) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches() && Long.parseLong(matcher.group(2)) < generation) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param last 是否为最后一个日志, 是则在第一条不完整或校验失败的记录处停止, 否则抛出异常
+     */
+    private Replay replay(Path file, int magic, Consumer<Coffee> consumer, boolean last) throws IOException {
+        Replay replay = new Replay();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is larger than 2GB");
+            }
+            if (size < HEADER_BYTES) {
+                return corrupt(file, replay, 0, last);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != magic || buffer.getInt() != VERSION) {
+                throw new IOException(file + " is not a coffee " + (magic == LOG_MAGIC ? "log" : "snapshot"));
+            }
+            replay.end = HEADER_BYTES;
+            byte[] bytes = new byte[256];
+            CRC32 crc = new CRC32();
+            while (buffer.hasRemaining()) {
+                if (buffer.remaining() < RECORD_HEADER_BYTES) {
+                    return corrupt(file, replay, replay.end, last);
+                }
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    return corrupt(file, replay, replay.end, last);
+                }
+                if (bytes.length < length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                buffer.get(bytes, 0, length);
+                crc.reset();
+                crc.update(bytes, 0, length);
+                Coffee coffee;
+                try {
+                    if ((int) crc.getValue() != checksum) {
+                        throw new IOException("checksum mismatch");
+                    }
+                    coffee = CoffeeBinaryCodec.decode(bytes, 0, length);
+                } catch (IOException | RuntimeException e) {
+                    return corrupt(file, replay, replay.end, last);
+                }
+                consumer.accept(coffee);
+                replay.records++;
+                replay.end = buffer.position();
+            }
+        }
+        return replay;
+    }
+
+    private static Replay corrupt(Path file, Replay replay, long offset, boolean last) throws IOException {
+        if (!last) {
+            throw new IOException(file + " is corrupted at offset " + offset);
+        }
+        replay.end = offset;
+        return replay;
+    }
+
+    private void lock() throws IOException {
+        lockChannel = FileChannel.open(dir.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            fileLock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            fileLock = null;
+        }
+        if (fileLock == null) {
+            lockChannel.close();
+            throw new IllegalStateException(dir + " is used by another CoffeeStore");
+        }
+    }
+
+    private void syncDirectory() {
+        try (FileChannel directory = FileChannel.open(dir, StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            //部分平台不支持打开目录
+        }
+    }
+
+    private static void writeHeader(FileChannel channel, int magic) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(magic).putInt(VERSION);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        channel.force(false);
+    }
+
+    private static void write(FileChannel channel, byte[] bytes, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private Path logFile(long generation) {
+        return dir.resolve("log-" + generation + ".wal");
+    }
+
+    private Path snapshotFile(long generation) {
+        return dir.resolve("snapshot-" + generation + ".bin");
+    }
+
+    private static class Replay {
+        private long records;
+        private long end;
+    }
+}
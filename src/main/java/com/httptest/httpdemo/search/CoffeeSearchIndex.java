@@ -0,0 +1,303 @@
+package com.httptest.httpdemo.search;
+
+import com.httptest.httpdemo.model.Coffee;
+import com.httptest.httpdemo.repository.CoffeeRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Coffee名称的搜索索引, 不区分大小写
+ * 前缀: 有序索引 小写name + '\0' + id -> id, 从前缀处开始顺序取前limit条, 复杂度O(log n + limit)
+ * 子串/模糊: 三元组倒排索引 trigram -> id集合, 名称前补两个空格、后补一个空格后切分(与pg_trgm相同), 词首的三元组也可以匹配
+ * 子串查询取查询中选择性最高(集合最小)的三元组作为候选, 模糊查询按共有三元组的Jaccard相似度排序, 都不遍历全部记录
+ * 不足三个字符的子串查询没有完整的三元组, 使用名称中长度为1和2的子串的倒排索引取候选
+ * 通过CoffeeRepository的写入回调增量更新; 候选记录查询时从CoffeeRepository重新读取并校验名称, 不会返回过期结果
+ */
+@Component
+public class CoffeeSearchIndex {
+
+    /**
+     * 少于该长度的子串查询没有完整的三元组, 使用shortGrams
+     */
+    public static final int MIN_SUBSTRING_LENGTH = 3;
+
+    /**
+     * 模糊查询的最低相似度
+     */
+    private static final double MIN_SIMILARITY = 0.3;
+
+    private static final Comparator<Match> CONTAINS_ORDER = Comparator.<Match>comparingDouble(m -> m.score)
+            .thenComparingInt(m -> m.key.length())
+            .thenComparing(m -> m.key);
+    private static final Comparator<Match> FUZZY_ORDER = Comparator.<Match>comparingDouble(m -> m.score)
+            .thenComparing(m -> m.key);
+
+    private final CoffeeRepository coffeeRepository;
+    private final ConcurrentSkipListMap<String, String> names = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, Set<String>> trigrams = new ConcurrentHashMap<>();
+    /**
+     * 名称中长度为1和2的子串(不补空格) -> id集合
+     */
+    private final ConcurrentHashMap<String, Set<String>> shortGrams = new ConcurrentHashMap<>();
+    /**
+     * id -> 名称的三元组数, 用于计算相似度
+     */
+    private final ConcurrentHashMap<String, Integer> sizes = new ConcurrentHashMap<>();
+
+    public CoffeeSearchIndex(CoffeeRepository coffeeRepository) {
+        this.coffeeRepository = coffeeRepository;
+        coffeeRepository.addListener(this::changed);
+        for (Coffee coffee : coffeeRepository.findAll()) {
+            add(coffee);
+        }
+    }
+
+    /**
+     * @return 名称以prefix开头的记录, 按名称排序
+     */
+    public List<Coffee> prefix(String prefix, int limit) {
+        String normalized = normalize(prefix);
+        List<Coffee> result = new ArrayList<>(Math.min(limit, 64));
+        for (Map.Entry<String, String> entry : names.tailMap(normalized).entrySet()) {
+            if (result.size() == limit || !entry.getKey().startsWith(normalized)) {
+                break;
+            }
+            Coffee coffee = coffeeRepository.findById(entry.getValue());
+            if (coffee != null && coffee.getName() != null && normalize(coffee.getName()).startsWith(normalized)) {
+                result.add(coffee);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return 名称包含text的记录, 匹配位置靠前、名称较短的在前
+     */
+    public List<Coffee> contains(String text, int limit) {
+        String normalized = normalize(text);
+        Set<String> candidates = null;
+        if (normalized.length() < MIN_SUBSTRING_LENGTH) {
+            candidates = shortGrams.get(normalized);
+            if (candidates == null) {
+                return Collections.emptyList();
+            }
+        }
+        for (int i = 0; i + 3 <= normalized.length(); i++) {
+            Set<String> ids = trigrams.get(normalized.substring(i, i + 3));
+            if (ids == null) {
+                return Collections.emptyList();
+            }
+            if (candidates == null || ids.size() < candidates.size()) {
+                candidates = ids;
+            }
+        }
+        PriorityQueue<Match> heap = new PriorityQueue<>(limit + 1, CONTAINS_ORDER.reversed());
+        for (String id : candidates) {
+            Coffee coffee = coffeeRepository.findById(id);
+            if (coffee == null || coffee.getName() == null) {
+                continue;
+            }
+            String name = normalize(coffee.getName());
+            int index = name.indexOf(normalized);
+            if (index >= 0) {
+                heap.add(new Match(name, index, coffee));
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+            }
+        }
+        List<Match> sorted = new ArrayList<>(heap);
+        sorted.sort(CONTAINS_ORDER);
+        List<Coffee> result = new ArrayList<>(sorted.size());
+        for (Match match : sorted) {
+            result.add(match.coffee);
+        }
+        return result;
+    }
+
+    /**
+     * @return 与text的三元组相似度(Jaccard)不低于MIN_SIMILARITY的记录, 相似度高的在前
+     */
+    public List<Coffee> fuzzy(String text, int limit) {
+        String normalized = normalize(text);
+        List<String> grams = new ArrayList<>(grams(normalized));
+        if (grams.isEmpty()) {
+            return Collections.emptyList();
+        }
+        grams.sort(Comparator.comparingInt(gram -> postings(gram).size()));
+        //名称的三元组不少于共有的三元组, 相似度不超过 共有数 / 查询的三元组数, 因此至少要有minShared个共有的三元组,
+        //候选记录必然出现在最小的 grams.size() - minShared + 1 个集合中, 其余较大的集合只用于计数
+        int minShared = (int) Math.ceil(MIN_SIMILARITY * grams.size());
+        int probe = grams.size() - minShared + 1;
+        Map<String, int[]> shared = new HashMap<>();
+        for (int i = 0; i < probe; i++) {
+            for (String id : postings(grams.get(i))) {
+                shared.computeIfAbsent(id, k -> new int[1])[0]++;
+            }
+        }
+        PriorityQueue<Match> heap = new PriorityQueue<>(limit + 1, FUZZY_ORDER.reversed());
+        for (Map.Entry<String, int[]> entry : shared.entrySet()) {
+            int common = entry.getValue()[0];
+            for (int i = probe; i < grams.size(); i++) {
+                if (postings(grams.get(i)).contains(entry.getKey())) {
+                    common++;
+                }
+            }
+            Integer size = sizes.get(entry.getKey());
+            if (common < minShared || size == null) {
+                continue;
+            }
+            double similarity = (double) common / (grams.size() + size - common);
+            if (similarity >= MIN_SIMILARITY) {
+                heap.add(new Match(entry.getKey(), -similarity));
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+            }
+        }
+        List<Match> sorted = new ArrayList<>(heap);
+        sorted.sort(FUZZY_ORDER);
+        List<Coffee> result = new ArrayList<>(sorted.size());
+        for (Match match : sorted) {
+            Coffee coffee = coffeeRepository.findById(match.key);
+            if (coffee != null && coffee.getName() != null && similarity(grams, normalize(coffee.getName())) >= MIN_SIMILARITY) {
+                result.add(coffee);
+            }
+        }
+        return result;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("names", names.size());
+        stats.put("trigrams", trigrams.size());
+        stats.put("shortGrams", shortGrams.size());
+        return stats;
+    }
+
+    /**
+     * 在CoffeeRepository的写锁内调用
+     */
+    private void changed(Coffee previous, Coffee current) {
+        if (previous != null && !Objects.equals(previous.getName(), current.getName())) {
+            remove(previous);
+        }
+        add(current);
+    }
+
+    /**
+     * 构造时的全量建索引可能与写入回调并发, 修改索引的方法串行执行
+     */
+    private synchronized void add(Coffee coffee) {
+        if (coffee.getName() == null) {
+            return;
+        }
+        String name = normalize(coffee.getName());
+        Set<String> grams = grams(name);
+        names.put(name + '\0' + coffee.getId(), coffee.getId());
+        for (String gram : grams) {
+            trigrams.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet()).add(coffee.getId());
+        }
+        sizes.put(coffee.getId(), grams.size());
+        for (String gram : shortGrams(name)) {
+            shortGrams.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet()).add(coffee.getId());
+        }
+    }
+
+    private synchronized void remove(Coffee coffee) {
+        if (coffee.getName() == null) {
+            return;
+        }
+        String name = normalize(coffee.getName());
+        names.remove(name + '\0' + coffee.getId());
+        for (String gram : grams(name)) {
+            trigrams.computeIfPresent(gram, (g, ids) -> {
+                ids.remove(coffee.getId());
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+        sizes.remove(coffee.getId());
+        for (String gram : shortGrams(name)) {
+            shortGrams.computeIfPresent(gram, (g, ids) -> {
+                ids.remove(coffee.getId());
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> grams(String normalized) {
+        if (normalized.isEmpty()) {
+            return Collections.emptySet();
+        }
+        String padded = "  " + normalized + " ";
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    private static Set<String> shortGrams(String normalized) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i < normalized.length(); i++) {
+            grams.add(normalized.substring(i, i + 1));
+            if (i + 2 <= normalized.length()) {
+                grams.add(normalized.substring(i, i + 2));
+            }
+        }
+        return grams;
+    }
+
+    private Set<String> postings(String gram) {
+        Set<String> ids = trigrams.get(gram);
+        return ids == null ? Collections.emptySet() : ids;
+    }
+
+    private static double similarity(List<String> grams, String name) {
+        Set<String> nameGrams = grams(name);
+        int common = 0;
+        for (String gram : grams) {
+            if (nameGrams.contains(gram)) {
+                common++;
+            }
+        }
+        return (double) common / (grams.size() + nameGrams.size() - common);
+    }
+
+    /**
+     * score越小越靠前, 相同时按key排序
+     */
+    private static class Match {
+        private final String key;
+        private final double score;
+        private final Coffee coffee;
+
+        Match(String key, double score) {
+            this(key, score, null);
+        }
+
+        Match(String key, double score, Coffee coffee) {
+            this.key = key;
+            this.score = score;
+            this.coffee = coffee;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.httptest.httpdemo.storage;
+
+import com.httptest.httpdemo.model.StoredFile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 一个请求中的多个文件并发写入UploadStorage
+ * 所有请求共用一个有界线程池(coffee.upload.threads), 每个请求最多parallelism个文件同时处理, 其中一个在请求线程上执行;
+ * 线程池不排队, 没有空闲线程时由请求线程处理, 请求不会等待其他请求的文件
+ * parallelism为0时取CPU数, 单核上顺序处理
+ * 返回结果与参数顺序一致; 任一文件失败时不再处理剩余文件, 删除本次已保存的文件并抛出第一个异常
+ */
+@Slf4j
+@Component
+public class MultipartUploader implements DisposableBean {
+
+    private final UploadStorage uploadStorage;
+    private final ThreadPoolExecutor executor;
+    private final int parallelism;
+
+    public MultipartUploader(UploadStorage uploadStorage,
+                             @Value("${coffee.upload.threads:8}") int threads,
+                             @Value("${coffee.upload.parallelism:0}") int parallelism) {
+        this.uploadStorage = uploadStorage;
+        this.parallelism = Math.max(1, Math.min(threads + 1,
+                parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors()));
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "upload-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public List<StoredFile> storeAll(List<MultipartFile> files) throws IOException {
+        if (files.size() <= 1 || parallelism == 1) {
+            List<StoredFile> list = new ArrayList<>(files.size());
+            for (MultipartFile file : files) {
+                list.add(uploadStorage.store(file));
+            }
+            return list;
+        }
+
+        StoredFile[] results = new StoredFile[files.size()];
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        int workers = Math.min(parallelism, files.size());
+        CountDownLatch done = new CountDownLatch(workers - 1);
+        Runnable worker = () -> {
+            int i;
+            while (failure.get() == null && (i = next.getAndIncrement()) < results.length) {
+                try {
+                    results[i] = uploadStorage.store(files.get(i));
+                } catch (IOException | RuntimeException | Error e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        };
+        for (int i = 1; i < workers; i++) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        worker.run();
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                done.countDown();
+            }
+        }
+        worker.run();
+        //其他线程仍在读取请求中的文件, 必须等待结束后才能返回
+        awaitUninterruptibly(done);
+
+        Throwable e = failure.get();
+        if (e != null) {
+            discard(results);
+            if (e instanceof IOException) {
+                throw (IOException) e;
+            }
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw (Error) e;
+        }
+        return Arrays.asList(results);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    private void discard(StoredFile[] results) {
+        for (StoredFile stored : results) {
+            if (stored != null) {
+                try {
+                    uploadStorage.delete(stored.getId());
+                } catch (IOException e) {
+                    log.warn("Cannot delete {} after failed upload", stored.getId(), e);
+                }
+            }
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
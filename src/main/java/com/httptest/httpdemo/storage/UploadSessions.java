@@ -0,0 +1,332 @@
+package com.httptest.httpdemo.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.httptest.httpdemo.model.StoredFile;
+import com.httptest.httpdemo.model.UploadSession;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * 断点续传的上传会话
+ * 创建会话时按文件大小预分配数据文件, 每个分片按偏移量用FileChannel.write(buffer, position)写入, 分片可以并发、乱序到达;
+ * 已收到的区间在分片写入并force后保存到{id}.json, 重启后恢复, 连接中断时已写入的部分也会记录
+ * 全部收到后计算SHA-256, 移入UploadStorage
+ */
+@Slf4j
+@Component
+public class UploadSessions implements DisposableBean {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final UploadStorage uploadStorage;
+    private final Path dir;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+
+    public UploadSessions(UploadStorage uploadStorage, @Value("${coffee.upload.dir}") String dir) {
+        this.uploadStorage = uploadStorage;
+        this.dir = Paths.get(dir).resolve("sessions");
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(dir);
+        try (Stream<Path> paths = Files.list(dir)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                String name = path.getFileName().toString();
+                if (!name.endsWith(".json")) {
+                    continue;
+                }
+                UploadSession state = objectMapper.readValue(path.toFile(), UploadSession.class);
+                if (Files.exists(data(state.getId()))) {
+                    sessions.put(state.getId(), new Session(state));
+                } else {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    public UploadSession create(String fileName, String contentType, long size) throws IOException {
+        if (size < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must not be negative");
+        }
+        String id = UUID.randomUUID().toString().replace("-", "");
+        try (RandomAccessFile file = new RandomAccessFile(data(id).toFile(), "rw")) {
+            file.setLength(size);
+        }
+        Session session = new Session(UploadSession.builder().id(id).fileName(fileName).contentType(contentType).size(size).build());
+        synchronized (session) {
+            save(session);
+        }
+        sessions.put(id, session);
+        return session.snapshot();
+    }
+
+    public UploadSession find(String id) {
+        Session session = sessions.get(id);
+        if (session == null) {
+            return null;
+        }
+        synchronized (session) {
+            return session.snapshot();
+        }
+    }
+
+    /**
+     * 把in中的length个字节写入[start, start + length), 中断时记录已写入的部分
+     */
+    public UploadSession write(String id, long start, long length, InputStream in) throws IOException {
+        Session session = session(id);
+        if (start < 0 || length < 0 || start + length > session.state.getSize()) {
+            throw new ResponseStatusException(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE,
+                    "range must be within 0-" + session.state.getSize());
+        }
+        FileChannel channel = session.acquire();
+        long written = 0;
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, Math.max(length, 1)));
+            while (written < length) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), length - written));
+                int n = in.read(buffer.array(), 0, buffer.limit());
+                if (n < 0) {
+                    break;
+                }
+                buffer.limit(n);
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer, start + written);
+                }
+            }
+            if (in.read() >= 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "body is longer than the range");
+            }
+        } finally {
+            try {
+                if (written > 0) {
+                    channel.force(false);
+                }
+            } finally {
+                session.release(start, written);
+            }
+        }
+        if (written < length) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "body is shorter than the range, received " + written + " bytes");
+        }
+        synchronized (session) {
+            return session.snapshot();
+        }
+    }
+
+    /**
+     * 全部收到后计算SHA-256并移入UploadStorage, 删除会话
+     * @param sha256 不为空时与收到内容的SHA-256比较, 不一致返回400, 会话保留, 可以重新上传分片
+     */
+    public StoredFile complete(String id, String sha256) throws IOException {
+        Session session = session(id);
+        synchronized (session) {
+            if (session.writers > 0) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "chunks are still being written");
+            }
+            if (session.received() != session.state.getSize()) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "received " + session.received() + " of " + session.state.getSize() + " bytes");
+            }
+            session.completed = true;
+            session.closeChannel();
+        }
+        String actual;
+        Path temp = uploadStorage.temp(id);
+        try {
+            actual = sha256(data(id));
+            if (sha256 != null && !sha256.equalsIgnoreCase(actual)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "sha256 mismatch, received content has " + actual);
+            }
+            Files.move(data(id), temp, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            synchronized (session) {
+                session.completed = false;
+            }
+            throw e;
+        }
+        sessions.remove(id);
+        Files.deleteIfExists(state(id));
+        return uploadStorage.register(id, session.state.getFileName(), session.state.getContentType(), session.state.getSize(), actual, temp);
+    }
+
+    public boolean delete(String id) throws IOException {
+        Session session = sessions.remove(id);
+        if (session == null) {
+            return false;
+        }
+        synchronized (session) {
+            session.completed = true;
+            session.closeChannel();
+        }
+        Files.deleteIfExists(state(id));
+        Files.deleteIfExists(data(id));
+        return true;
+    }
+
+    @Override
+    public void destroy() {
+        for (Session session : sessions.values()) {
+            synchronized (session) {
+                session.closeChannel();
+            }
+        }
+    }
+
+    private Session session(String id) {
+        Session session = sessions.get(id);
+        if (session == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        return session;
+    }
+
+    /**
+     * 先写临时文件再替换, 中断时不会留下不完整的json
+     */
+    private void save(Session session) throws IOException {
+        Path state = state(session.state.getId());
+        Path temp = dir.resolve(session.state.getId() + ".json.tmp");
+        objectMapper.writeValue(temp.toFile(), session.snapshot());
+        Files.move(temp, state, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String sha256(Path path) throws IOException {
+        MessageDigest digest = UploadStorage.sha256();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return UploadStorage.toHex(digest.digest());
+    }
+
+    private Path state(String id) {
+        return dir.resolve(id + ".json");
+    }
+
+    private Path data(String id) {
+        return dir.resolve(id + ".part");
+    }
+
+    private class Session {
+
+        final UploadSession state;
+        /**
+         * start -> end, 合并后的已收到区间
+         */
+        final TreeMap<Long, Long> ranges = new TreeMap<>();
+        FileChannel channel;
+        int writers;
+        boolean completed;
+
+        Session(UploadSession state) {
+            this.state = state;
+            if (state.getRanges() != null) {
+                for (long[] range : state.getRanges()) {
+                    add(range[0], range[1]);
+                }
+            }
+        }
+
+        synchronized FileChannel acquire() throws IOException {
+            if (completed) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+            }
+            if (channel == null) {
+                channel = FileChannel.open(data(state.getId()), StandardOpenOption.WRITE);
+            }
+            writers++;
+            return channel;
+        }
+
+        synchronized void release(long start, long written) throws IOException {
+            writers--;
+            if (written > 0 && !completed) {
+                add(start, start + written);
+                save(this);
+            }
+        }
+
+        void closeChannel() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    log.warn("Cannot close upload session {}", state.getId(), e);
+                }
+                channel = null;
+            }
+        }
+
+        void add(long start, long end) {
+            Map.Entry<Long, Long> before = ranges.floorEntry(start);
+            if (before != null && before.getValue() >= start) {
+                start = before.getKey();
+                end = Math.max(end, before.getValue());
+            }
+            Map.Entry<Long, Long> after;
+            while ((after = ranges.ceilingEntry(start)) != null && after.getKey() <= end) {
+                end = Math.max(end, after.getValue());
+                ranges.remove(after.getKey());
+            }
+            ranges.put(start, end);
+        }
+
+        long received() {
+            long received = 0;
+            for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+                received += range.getValue() - range.getKey();
+            }
+            return received;
+        }
+
+        UploadSession snapshot() {
+            List<long[]> list = new ArrayList<>(ranges.size());
+            for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+                list.add(new long[]{range.getKey(), range.getValue()});
+            }
+            Map.Entry<Long, Long> first = ranges.firstEntry();
+            return UploadSession.builder()
+                    .id(state.getId())
+                    .fileName(state.getFileName())
+                    .contentType(state.getContentType())
+                    .size(state.getSize())
+                    .offset(first != null && first.getKey() == 0 ? first.getValue() : 0)
+                    .received(received())
+                    .ranges(list)
+                    .build();
+        }
+    }
+}
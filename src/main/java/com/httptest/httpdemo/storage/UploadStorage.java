@@ -0,0 +1,321 @@
+package com.httptest.httpdemo.storage;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.httptest.httpdemo.model.StoredFile;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * 上传文件存储, 按内容寻址去重
+ * servlet版本将容器缓存part的临时文件移动到tmp后读取一遍计算SHA-256, reactive版本通过AsynchronousFileChannel写入临时文件,
+ * 同时计算SHA-256和大小, 堆内存占用与文件大小无关; 之后按SHA-256移动到blobs/xx/sha256, 内容已存在时删除临时文件, 相同内容只保存一份
+ * 每次上传得到一个新的id, 引用同一个blob, blob按引用计数, 最后一个引用删除时删除blob
+ * 文件记录追加写入files.log, 启动时重放并压缩, 清理没有引用的blob和未完成的临时文件
+ */
+@Component
+public class UploadStorage {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final String LOG_FILE = "files.log";
+
+    private final Path blobs;
+    private final Path tmp;
+    private final Path log;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ConcurrentHashMap<String, StoredFile> files = new ConcurrentHashMap<>();
+    /**
+     * sha256 -> 引用数, 与blob文件的创建删除、files.log的写入一起由lock保护
+     */
+    private final Map<String, Integer> refs = new HashMap<>();
+    private final Object lock = new Object();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder deduplicatedBytes = new LongAdder();
+
+    public UploadStorage(@Value("${coffee.upload.dir}") String dir) {
+        Path root = Paths.get(dir);
+        this.blobs = root.resolve("blobs");
+        this.tmp = root.resolve("tmp");
+        this.log = root.resolve(LOG_FILE);
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(blobs);
+        Files.createDirectories(tmp);
+        synchronized (lock) {
+            replay();
+            sweep();
+            compact();
+        }
+    }
+
+    /**
+     * 容器已将part写入自己的临时文件(file-size-threshold=0), 通过Part.write移动(重命名)到tmp, 不再复制一遍,
+     * 再只读一遍计算SHA-256; 容器临时目录与上传目录不在同一文件系统时Part.write只能复制
+     * @param file
+     * @return
+     */
+    public StoredFile store(MultipartFile file) throws IOException {
+        String id = newId();
+        Path temp = tmp.resolve(id).toAbsolutePath();
+        String sha256;
+        long size;
+        try {
+            file.transferTo(temp.toFile());
+            sha256 = sha256(temp);
+            size = Files.size(temp);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return register(id, file.getOriginalFilename(), file.getContentType(), size, sha256, temp);
+    }
+
+    /**
+     * reactive版本, 上传内容逐块计算SHA-256并通过AsynchronousFileChannel写入, 不阻塞调用线程
+     * @param fileName
+     * @param contentType
+     * @param content
+     * @return
+     */
+    public Mono<StoredFile> store(String fileName, String contentType, Flux<DataBuffer> content) {
+        return Mono.defer(() -> {
+            String id = newId();
+            Path temp = tmp.resolve(id);
+            MessageDigest digest = sha256();
+            long[] size = new long[1];
+            Flux<DataBuffer> digested = content.doOnNext(buffer -> {
+                size[0] += buffer.readableByteCount();
+                digest.update(buffer.asByteBuffer());
+            });
+            return DataBufferUtils.write(digested, temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)
+                    .then(Mono.fromCallable(() -> register(id, fileName, contentType, size[0], toHex(digest.digest()), temp)))
+                    .doOnError(e -> temp.toFile().delete());
+        });
+    }
+
+    /**
+     * 删除文件记录, blob没有其他引用时一起删除
+     * @param id
+     * @return 记录不存在时返回false
+     */
+    public boolean delete(String id) throws IOException {
+        synchronized (lock) {
+            StoredFile stored = files.remove(id);
+            if (stored == null) {
+                return false;
+            }
+            append(Collections.singletonMap("delete", id));
+            release(stored.getSha256());
+            return true;
+        }
+    }
+
+    public StoredFile find(String id) {
+        return id == null ? null : files.get(id);
+    }
+
+    public Path path(StoredFile file) {
+        return blobPath(file.getSha256());
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("files", files.size());
+        synchronized (lock) {
+            map.put("blobs", refs.size());
+        }
+        map.put("deduplicated", deduplicated.sum());
+        map.put("deduplicatedBytes", deduplicatedBytes.sum());
+        return map;
+    }
+
+    /**
+     * 临时文件移入blobs或删除(内容已存在), 登记文件记录
+     * @param temp temp(id)返回的路径, 或同一文件系统中的其他文件
+     */
+    StoredFile register(String id, String fileName, String contentType, long size, String sha256, Path temp) throws IOException {
+        StoredFile stored = StoredFile.builder()
+                .id(id)
+                .fileName(fileName)
+                .contentType(contentType)
+                .size(size)
+                .sha256(sha256)
+                .build();
+        synchronized (lock) {
+            Path blob = blobPath(stored.getSha256());
+            Integer count = refs.get(stored.getSha256());
+            if (count == null && !Files.exists(blob)) {
+                Files.createDirectories(blob.getParent());
+                Files.move(temp, blob, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                Files.delete(temp);
+                deduplicated.increment();
+                deduplicatedBytes.add(size);
+            }
+            refs.put(stored.getSha256(), count == null ? 1 : count + 1);
+            files.put(id, stored);
+            append(Collections.singletonMap("put", stored));
+        }
+        return stored;
+    }
+
+    Path temp(String id) {
+        return tmp.resolve(id);
+    }
+
+    private void release(String sha256) throws IOException {
+        Integer count = refs.get(sha256);
+        if (count == null || count <= 1) {
+            refs.remove(sha256);
+            Files.deleteIfExists(blobPath(sha256));
+        } else {
+            refs.put(sha256, count - 1);
+        }
+    }
+
+    private Path blobPath(String sha256) {
+        return blobs.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    /**
+     * 每行一条记录: {"put":StoredFile} 或 {"delete":id}
+     */
+    private void append(Map<String, ?> record) throws IOException {
+        byte[] line = (objectMapper.writeValueAsString(record) + "\n").getBytes(StandardCharsets.UTF_8);
+        Files.write(log, line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * 写入中断时最后一行可能不完整, 忽略无法解析的行
+     */
+    private void replay() throws IOException {
+        if (!Files.exists(log)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(log, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                JsonNode record;
+                try {
+                    record = objectMapper.readTree(line);
+                } catch (JsonProcessingException e) {
+                    continue;
+                }
+                if (record.has("put")) {
+                    StoredFile stored = objectMapper.treeToValue(record.get("put"), StoredFile.class);
+                    if (files.put(stored.getId(), stored) == null) {
+                        refs.merge(stored.getSha256(), 1, Integer::sum);
+                    }
+                } else if (record.has("delete")) {
+                    StoredFile stored = files.remove(record.get("delete").asText());
+                    if (stored != null) {
+                        refs.computeIfPresent(stored.getSha256(), (sha, count) -> count <= 1 ? null : count - 1);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 删除没有引用的blob(移动到blobs后、写入记录前中断)和临时文件, 以及blob已丢失的记录
+     */
+    private void sweep() throws IOException {
+        try (Stream<Path> paths = Files.walk(blobs)) {
+            for (Path path : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+                if (!refs.containsKey(path.getFileName().toString())) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+        try (Stream<Path> paths = Files.list(tmp)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+        files.values().removeIf(stored -> {
+            if (Files.exists(blobPath(stored.getSha256()))) {
+                return false;
+            }
+            refs.remove(stored.getSha256());
+            return true;
+        });
+    }
+
+    /**
+     * 只保留现存记录, 写入新文件后替换
+     */
+    private void compact() throws IOException {
+        Path compacted = tmp.resolve(LOG_FILE);
+        StringBuilder lines = new StringBuilder();
+        for (StoredFile stored : files.values()) {
+            lines.append(objectMapper.writeValueAsString(Collections.singletonMap("put", stored))).append('\n');
+        }
+        Files.write(compacted, lines.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(compacted, log, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static String newId() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,126 @@
+package com.httptest.httpdemo.benchmark;
+
+import com.httptest.httpdemo.HttpDemoApplication;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.DispatcherServlet;
+
+import javax.servlet.ServletContext;
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * CoffeeController各种参数绑定方式的开销, 分别经过MockMvc和直接调用DispatcherServlet
+ * 吞吐量和延迟分布由BenchmarkMode给出, 分配速率由gc profiler给出
+ * mvn -Pbenchmark test -Djmh.args="CoffeeBindingBenchmark -prof gc"
+ * <p>
+ * 每轮迭代重启一次应用并清空数据目录, 避免新增的记录和上传文件在迭代之间累积
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class CoffeeBindingBenchmark {
+
+    private static final File DATA_DIR = new File("target/benchmark-data");
+
+    /**
+     * query: add(name, price), params
+     * modelAttribute: add2(Coffee), params
+     * formData: addWithFormdata(Coffee), multipart/form-data
+     * urlencoded: addWithFormdataUrlencoded(Coffee), application/x-www-form-urlencoded
+     * body: addWithBody(@RequestBody Coffee), json
+     * bodyJson: addWithBodyJson(@RequestBody Coffee), json
+     * multipart: upload3(MultipartFile, CoffeeFile), 1KB文件 + 字段
+     */
+    @Param({"query", "modelAttribute", "formData", "urlencoded", "body", "bodyJson", "multipart"})
+    public String style;
+
+    private ConfigurableApplicationContext context;
+    private MockMvc mockMvc;
+    private DispatcherServlet dispatcherServlet;
+    private ServletContext servletContext;
+    private RequestBuilder request;
+
+    @Setup(Level.Iteration)
+    public void setup() throws Exception {
+        FileSystemUtils.deleteRecursively(DATA_DIR);
+        context = new SpringApplicationBuilder(HttpDemoApplication.class)
+                .properties("server.port=0", "coffee.data-dir=" + DATA_DIR.getPath(), "logging.level.root=WARN",
+                        //DispatcherServlet默认在第一次请求时才初始化, 直接调用前需要先完成初始化
+                        "spring.mvc.servlet.load-on-startup=1")
+                .run();
+        WebApplicationContext webContext = (WebApplicationContext) context;
+        mockMvc = MockMvcBuilders.webAppContextSetup(webContext).build();
+        dispatcherServlet = context.getBean(DispatcherServlet.class);
+        servletContext = webContext.getServletContext();
+        request = request(style);
+
+        //确认请求确实绑定成功, 避免测到错误分支
+        MockHttpServletResponse response = mockMvc.perform(request).andReturn().getResponse();
+        if (response.getStatus() != 200) {
+            throw new IllegalStateException(style + " returned " + response.getStatus() + ": " + response.getContentAsString());
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        context.close();
+        FileSystemUtils.deleteRecursively(DATA_DIR);
+    }
+
+    @Benchmark
+    public byte[] mockMvc() throws Exception {
+        return mockMvc.perform(request).andReturn().getResponse().getContentAsByteArray();
+    }
+
+    @Benchmark
+    public byte[] dispatcherServlet() throws Exception {
+        MockHttpServletRequest servletRequest = request.buildRequest(servletContext);
+        MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+        dispatcherServlet.service(servletRequest, servletResponse);
+        return servletResponse.getContentAsByteArray();
+    }
+
+    private static RequestBuilder request(String style) {
+        String json = "{\"id\":\"bench\",\"name\":\"bench\",\"price\":12.50}";
+        switch (style) {
+            case "query":
+                return post("/coffee").param("name", "bench").param("price", "12.50");
+            case "modelAttribute":
+                return post("/coffee").param("id", "bench").param("price", "12.50");
+            case "formData":
+                return multipart("/coffee/form-data").param("id", "bench").param("name", "bench").param("price", "12.50");
+            case "urlencoded":
+                return post("/coffee/form-data-urlencoded").contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .content("id=bench&name=bench&price=12.50");
+            case "body":
+                return post("/coffee/body").contentType(MediaType.APPLICATION_JSON).content(json);
+            case "bodyJson":
+                return post("/coffee/body-json").contentType(MediaType.APPLICATION_JSON).content(json);
+            case "multipart":
+                byte[] content = new byte[1024];
+                Arrays.fill(content, (byte) 'a');
+                return multipart("/coffee/upload3")
+                        .file(new MockMultipartFile("file", "bench.txt", MediaType.TEXT_PLAIN_VALUE, content))
+                        .param("name", "bench").param("price", "12.50");
+            default:
+                throw new IllegalArgumentException("Unknown style " + style);
+        }
+    }
+}
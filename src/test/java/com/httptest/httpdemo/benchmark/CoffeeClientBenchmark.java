@@ -0,0 +1,83 @@
+package com.httptest.httpdemo.benchmark;
+
+import com.httptest.httpdemo.HttpDemoApplication;
+import com.httptest.httpdemo.model.Coffee;
+import org.apache.http.impl.NoConnectionReuseStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 客户端调用GET /coffee/{id}的开销对比
+ * newRestTemplate: 每次调用new RestTemplate(), 即原测试类的写法, 每次重新创建转换器, 连接由HttpURLConnection的keep-alive缓存复用(默认最多5个)
+ * simple: 共享一个默认的RestTemplate(SimpleClientHttpRequestFactory)
+ * noReuse: HttpClient, 每个请求新建连接, 用来单独衡量建连的开销
+ * pooled: 注入的coffeeRestTemplate, HttpClient连接池 + keep-alive
+ * mvn -Pbenchmark test -Djmh.args="CoffeeClientBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(16)
+public class CoffeeClientBenchmark {
+
+    private static final File DATA_DIR = new File("target/benchmark-data");
+
+    @Param({"newRestTemplate", "simple", "noReuse", "pooled"})
+    public String client;
+
+    private ConfigurableApplicationContext context;
+    private RestTemplate restTemplate;
+    private CloseableHttpClient httpClient;
+    private boolean newPerCall;
+    private String url;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        FileSystemUtils.deleteRecursively(DATA_DIR);
+        context = new SpringApplicationBuilder(HttpDemoApplication.class)
+                .properties("server.port=0", "coffee.data-dir=" + DATA_DIR.getPath(), "logging.level.root=WARN")
+                .run();
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        url = "http://localhost:" + port + "/coffee/{id}";
+        newPerCall = "newRestTemplate".equals(client);
+        if ("pooled".equals(client)) {
+            restTemplate = context.getBean("coffeeRestTemplate", RestTemplate.class);
+        } else if ("noReuse".equals(client)) {
+            httpClient = HttpClients.custom().setConnectionReuseStrategy(NoConnectionReuseStrategy.INSTANCE).build();
+            restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+        } else {
+            restTemplate = new RestTemplate();
+        }
+        restTemplate.postForObject("http://localhost:" + port + "/coffee/body",
+                Coffee.builder().id("bench").name("bench").price(new BigDecimal("12.50")).build(), Coffee.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (httpClient != null) {
+            httpClient.close();
+        }
+        context.close();
+        FileSystemUtils.deleteRecursively(DATA_DIR);
+    }
+
+    @Benchmark
+    public Coffee getById() {
+        RestTemplate template = newPerCall ? new RestTemplate() : restTemplate;
+        return template.getForObject(url, Coffee.class, "bench");
+    }
+}
@@ -0,0 +1,90 @@
+package com.httptest.httpdemo.benchmark;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.httptest.httpdemo.converter.CoffeeBinaryCodec;
+import com.httptest.httpdemo.converter.CoffeeJsonCodec;
+import com.httptest.httpdemo.model.Coffee;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * application/x-coffee-bin, 手写json编解码 与 Jackson反射编解码对比
+ * mvn -Pbenchmark test -Djmh.args="CoffeeCodecBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CoffeeCodecBenchmark {
+
+    @Param({"1", "100"})
+    public int count;
+
+    private ObjectMapper objectMapper;
+    private JavaType listType;
+    private List<Coffee> coffees;
+    private byte[] json;
+    private byte[] binary;
+
+    @Setup
+    public void setup() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        listType = objectMapper.getTypeFactory().constructCollectionType(List.class, Coffee.class);
+        coffees = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            coffees.add(Coffee.builder().id(String.valueOf(i)).name("coffee-" + i).price(new BigDecimal("12.50").add(BigDecimal.valueOf(i))).build());
+        }
+        json = encodeJson();
+        binary = encodeBinary();
+        System.out.println("payload bytes: json=" + json.length + ", binary=" + binary.length);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws IOException {
+        return objectMapper.writeValueAsBytes(coffees);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * count);
+        CoffeeBinaryCodec.writeAll(coffees, bytes);
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encodeJsonCodec() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * count);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(bytes, JsonEncoding.UTF8)) {
+            CoffeeJsonCodec.writeAll(coffees, generator);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public List<Coffee> decodeJson() throws IOException {
+        return objectMapper.readValue(json, listType);
+    }
+
+    @Benchmark
+    public List<Coffee> decodeJsonCodec() throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+            return CoffeeJsonCodec.readAll(parser, Coffee.class);
+        }
+    }
+
+    @Benchmark
+    public List<Coffee> decodeBinary() throws IOException {
+        return CoffeeBinaryCodec.readAll(new ByteArrayInputStream(binary));
+    }
+}
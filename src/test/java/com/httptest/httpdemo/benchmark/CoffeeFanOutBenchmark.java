@@ -0,0 +1,101 @@
+package com.httptest.httpdemo.benchmark;
+
+import com.httptest.httpdemo.HttpDemoApplication;
+import com.httptest.httpdemo.client.AsyncCoffeeClient;
+import com.httptest.httpdemo.model.Coffee;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.client.RestTemplate;
+
+import javax.servlet.Filter;
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按id批量查询: 连接池RestTemplate逐个请求 与 AsyncCoffeeClient.getByIds并发请求 的总耗时对比
+ * 本机回环没有网络延迟, latencyMillis通过Filter在服务端为每个请求增加固定延迟, 模拟网络往返和下游耗时
+ * mvn -Pbenchmark test -Djmh.args="CoffeeFanOutBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class CoffeeFanOutBenchmark {
+
+    private static final File DATA_DIR = new File("target/benchmark-data");
+
+    @Param({"100", "500"})
+    public int count;
+
+    @Param({"0", "5"})
+    public long latencyMillis;
+
+    private ConfigurableApplicationContext context;
+    private RestTemplate restTemplate;
+    private AsyncCoffeeClient asyncClient;
+    private String baseUrl;
+    private List<String> ids;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        FileSystemUtils.deleteRecursively(DATA_DIR);
+        context = new SpringApplicationBuilder(HttpDemoApplication.class)
+                .properties("server.port=0", "coffee.data-dir=" + DATA_DIR.getPath(), "logging.level.root=WARN")
+                .initializers(context -> ((GenericApplicationContext) context).registerBean("latencyFilter", FilterRegistrationBean.class,
+                        () -> new FilterRegistrationBean<Filter>((request, response, chain) -> {
+                            if (latencyMillis > 0) {
+                                try {
+                                    Thread.sleep(latencyMillis);
+                                } catch (InterruptedException e) {
+                                    Thread.currentThread().interrupt();
+                                }
+                            }
+                            chain.doFilter(request, response);
+                        })))
+                .run();
+        baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+        restTemplate = context.getBean("coffeeRestTemplate", RestTemplate.class);
+        asyncClient = context.getBean(AsyncCoffeeClient.class).withBaseUrl(baseUrl);
+        ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Coffee coffee = Coffee.builder().id("fan-" + i).name("fan-" + i).price(BigDecimal.valueOf(i)).build();
+            restTemplate.postForObject(baseUrl + "/coffee/body", coffee, Coffee.class);
+            ids.add(coffee.getId());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        FileSystemUtils.deleteRecursively(DATA_DIR);
+    }
+
+    @Benchmark
+    public List<Coffee> sequential() {
+        List<Coffee> result = new ArrayList<>(count);
+        for (String id : ids) {
+            result.add(restTemplate.getForObject(baseUrl + "/coffee/{id}", Coffee.class, id));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Coffee> fanOut() {
+        List<CompletableFuture<Coffee>> futures = asyncClient.getByIds(ids);
+        List<Coffee> result = new ArrayList<>(count);
+        for (CompletableFuture<Coffee> future : futures) {
+            result.add(future.join());
+        }
+        return result;
+    }
+}
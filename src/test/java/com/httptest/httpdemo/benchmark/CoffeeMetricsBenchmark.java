@@ -0,0 +1,36 @@
+package com.httptest.httpdemo.benchmark;
+
+import com.httptest.httpdemo.metrics.CoffeeMetrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CoffeeMetrics.record在请求路径上的开销, 多线程同时记录同一个处理方法, -prof gc应显示每次调用0字节分配
+ * mvn -Pbenchmark test -Djmh.args="CoffeeMetricsBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(4)
+public class CoffeeMetricsBenchmark {
+
+    private CoffeeMetrics coffeeMetrics;
+
+    @Setup
+    public void setup() {
+        coffeeMetrics = new CoffeeMetrics();
+    }
+
+    @Benchmark
+    public void record() {
+        long start = System.nanoTime();
+        coffeeMetrics.record("getById", 200, System.nanoTime() - start + 1_000_000L, -1, 47, false);
+    }
+
+    @Benchmark
+    public void recordUpload() {
+        long start = System.nanoTime();
+        coffeeMetrics.record("upload", 200, System.nanoTime() - start + 5_000_000L, 4096, 120, true);
+    }
+}
@@ -0,0 +1,75 @@
+package com.httptest.httpdemo.benchmark;
+
+import com.httptest.httpdemo.model.Coffee;
+import com.httptest.httpdemo.repository.CoffeeRepository;
+import com.httptest.httpdemo.search.CoffeeSearchIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CoffeeSearchIndex 与 遍历全部记录 的搜索耗时对比
+ * mvn -Pbenchmark test -Djmh.args="CoffeeSearchBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CoffeeSearchBenchmark {
+
+    private static final String[] WORDS = {"iced", "hot", "oat", "soy", "vanilla", "caramel", "mocha", "latte",
+            "americano", "espresso", "cappuccino", "macchiato", "cortado", "flat", "white", "double", "decaf"};
+
+    @Param({"100000"})
+    public int count;
+
+    private CoffeeRepository coffeeRepository;
+    private CoffeeSearchIndex index;
+
+    @Setup
+    public void setup() {
+        coffeeRepository = new CoffeeRepository();
+        Random random = new Random(42);
+        List<Coffee> coffees = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            coffees.add(Coffee.builder().name(name).build());
+        }
+        coffeeRepository.saveAll(coffees);
+        index = new CoffeeSearchIndex(coffeeRepository);
+    }
+
+    @Benchmark
+    public List<Coffee> prefix() {
+        return index.prefix("vanilla la", 10);
+    }
+
+    @Benchmark
+    public List<Coffee> contains() {
+        return index.contains("1234", 10);
+    }
+
+    @Benchmark
+    public List<Coffee> fuzzy() {
+        return index.fuzzy("capucino 4242", 10);
+    }
+
+    /**
+     * 不使用索引时, 取匹配位置最靠前的10条需要遍历全部记录
+     */
+    @Benchmark
+    public List<Coffee> scanContains() {
+        List<Coffee> result = new ArrayList<>();
+        for (Coffee coffee : coffeeRepository.findAll()) {
+            if (coffee.getName().contains("1234")) {
+                result.add(coffee);
+            }
+        }
+        result.sort(Comparator.comparingInt((Coffee coffee) -> coffee.getName().indexOf("1234"))
+                .thenComparingInt(coffee -> coffee.getName().length()));
+        return result.subList(0, Math.min(10, result.size()));
+    }
+}
@@ -0,0 +1,89 @@
+package com.httptest.httpdemo.cache;
+
+import com.httptest.httpdemo.model.Coffee;
+import com.httptest.httpdemo.repository.CoffeeRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponseCacheFilterTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final CoffeeRepository coffeeRepository = new CoffeeRepository();
+    private final ResponseCache responseCache = new ResponseCache(coffeeRepository, 1 << 20, 1 << 16, 5000);
+    private final ResponseCacheFilter filter = new ResponseCacheFilter(responseCache);
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentMissesRenderOnce() throws Exception {
+        AtomicInteger renders = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        FilterChain chain = (request, response) -> {
+            renders.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            response.setContentType("application/json");
+            response.getOutputStream().write("{\"id\":\"1\"}".getBytes());
+        };
+
+        List<Future<MockHttpServletResponse>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(executor.submit(() -> get("/coffee/1", chain)));
+        }
+        while ((Long) responseCache.singleFlightStats().get("calls") < 4) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        for (Future<MockHttpServletResponse> result : results) {
+            MockHttpServletResponse response = result.get(5, TimeUnit.SECONDS);
+            assertEquals(200, response.getStatus());
+            assertEquals("{\"id\":\"1\"}", response.getContentAsString());
+        }
+        assertEquals(1, renders.get());
+        assertEquals(3L, responseCache.singleFlightStats().get("collapsed"));
+    }
+
+    @Test
+    public void writeDuringRenderIsNotShared() throws Exception {
+        AtomicInteger renders = new AtomicInteger();
+        FilterChain chain = (request, response) -> {
+            //生成期间发生写入, 结果不写入缓存, 下一个请求重新生成
+            if (renders.incrementAndGet() == 1) {
+                coffeeRepository.save(Coffee.builder().id("2").name("two").build());
+            }
+            response.getOutputStream().write(String.valueOf(renders.get()).getBytes());
+        };
+        assertEquals("1", get("/coffee/2", chain).getContentAsString());
+        assertEquals("2", get("/coffee/2", chain).getContentAsString());
+        assertEquals("2", get("/coffee/2", chain).getContentAsString());
+        assertEquals(2, renders.get());
+    }
+
+    private MockHttpServletResponse get(String uri, FilterChain chain) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}
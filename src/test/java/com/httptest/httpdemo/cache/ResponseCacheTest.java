@@ -0,0 +1,96 @@
+package com.httptest.httpdemo.cache;
+
+import com.httptest.httpdemo.model.Coffee;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.*;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "coffee.data-dir=target/test-data")
+public class ResponseCacheTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ResponseCache responseCache;
+
+    @Test
+    public void hitAndNotModified() {
+        save("cache-1", "cache one", 1);
+        ResponseEntity<Coffee> first = restTemplate.getForEntity("/coffee/cache-1", Coffee.class);
+        long hits = hits();
+        ResponseEntity<Coffee> second = restTemplate.getForEntity("/coffee/cache-1", Coffee.class);
+
+        assertEquals(hits + 1, hits());
+        assertEquals(first.getBody(), second.getBody());
+        String etag = first.getHeaders().getETag();
+        assertNotNull(etag);
+        assertEquals(etag, second.getHeaders().getETag());
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(etag);
+        ResponseEntity<Coffee> conditional = restTemplate.exchange("/coffee/cache-1", HttpMethod.GET, new HttpEntity<>(headers), Coffee.class);
+        assertEquals(HttpStatus.NOT_MODIFIED, conditional.getStatusCode());
+    }
+
+    @Test
+    public void writeInvalidatesById() {
+        save("cache-2", "cache two", 2);
+        assertEquals("cache two", restTemplate.getForObject("/coffee/cache-2", Coffee.class).getName());
+        assertEquals("cache two", restTemplate.getForObject("/coffee/findById?id=cache-2", Coffee.class).getName());
+
+        save("cache-2", "cache two renamed", 2);
+
+        assertEquals("cache two renamed", restTemplate.getForObject("/coffee/cache-2", Coffee.class).getName());
+        assertEquals("cache two renamed", restTemplate.getForObject("/coffee/findById?id=cache-2", Coffee.class).getName());
+        assertEquals(HttpStatus.NOT_FOUND, restTemplate.getForEntity("/coffee?name=cache two", Coffee.class).getStatusCode());
+    }
+
+    @Test
+    public void unrelatedWriteKeepsNameEntry() {
+        save("cache-3", "cache three", 3);
+        restTemplate.getForObject("/coffee?name=cache three", Coffee.class);
+        save("cache-4", "cache four", 4);
+
+        long hits = hits();
+        assertEquals("cache-3", restTemplate.getForObject("/coffee?name=cache three", Coffee.class).getId());
+        assertEquals(hits + 1, hits());
+    }
+
+    @Test
+    public void writeInvalidatesList() {
+        int before = restTemplate.getForObject("/coffee", Coffee[].class).length;
+        save(null, "cache list", 5);
+        assertEquals(before + 1, restTemplate.getForObject("/coffee", Coffee[].class).length);
+    }
+
+    @Test
+    public void hitKeepsNextCursor() {
+        save("cache-5", "cache five", 5);
+        save("cache-6", "cache six", 6);
+        ResponseEntity<Coffee[]> first = restTemplate.getForEntity("/coffee?limit=1", Coffee[].class);
+        long hits = hits();
+        ResponseEntity<Coffee[]> second = restTemplate.getForEntity("/coffee?limit=1", Coffee[].class);
+
+        assertEquals(hits + 1, hits());
+        String cursor = first.getHeaders().getFirst("X-Next-Cursor");
+        assertNotNull(cursor);
+        assertEquals(cursor, second.getHeaders().getFirst("X-Next-Cursor"));
+        assertArrayEquals(first.getBody(), second.getBody());
+    }
+
+    private void save(String id, String name, int price) {
+        restTemplate.postForObject("/coffee/body", Coffee.builder().id(id).name(name).price(new BigDecimal(price)).build(), Coffee.class);
+    }
+
+    private long hits() {
+        return (Long) responseCache.stats().get("hits");
+    }
+}
@@ -0,0 +1,106 @@
+package com.httptest.httpdemo.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentCallsShareOneExecution() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>(5000);
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> singleFlight.execute("k", () -> {
+                executions.incrementAndGet();
+                await(release);
+                return "v";
+            })));
+        }
+        waitForCalls(singleFlight, 8);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals("v", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, executions.get());
+        assertEquals(7L, singleFlight.stats().get("collapsed"));
+        assertEquals(0, singleFlight.stats().get("inFlight"));
+        //完成后不缓存结果
+        assertEquals("w", singleFlight.execute("k", () -> "w"));
+    }
+
+    @Test
+    public void errorIsPropagatedToAllCallers() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>(5000);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(executor.submit(() -> singleFlight.execute("k", () -> {
+                await(release);
+                throw new IllegalStateException("boom");
+            })));
+        }
+        waitForCalls(singleFlight, 4);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            Exception e = assertThrows(Exception.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(1L, singleFlight.stats().get("errors"));
+    }
+
+    @Test
+    public void waiterTimesOut() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>(50);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> singleFlight.execute("k", () -> {
+            await(release);
+            return "v";
+        }));
+        waitForCalls(singleFlight, 1);
+
+        assertThrows(SingleFlightTimeoutException.class, () -> singleFlight.execute("k", () -> "other"));
+        assertEquals(1L, singleFlight.stats().get("timeouts"));
+        release.countDown();
+        assertEquals("v", leader.get(5, TimeUnit.SECONDS));
+    }
+
+    private static void waitForCalls(SingleFlight<?, ?> singleFlight, long calls) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((Long) singleFlight.stats().get("calls") < calls && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        //等待的调用在计数之后才进入get, 留出时间
+        Thread.sleep(50);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
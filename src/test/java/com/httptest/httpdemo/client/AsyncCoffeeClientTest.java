@@ -0,0 +1,67 @@
+package com.httptest.httpdemo.client;
+
+import com.httptest.httpdemo.model.Coffee;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "coffee.data-dir=target/test-data")
+public class AsyncCoffeeClientTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private AsyncCoffeeClient asyncCoffeeClient;
+
+    private AsyncCoffeeClient client;
+
+    @BeforeEach
+    public void setUp() {
+        client = asyncCoffeeClient.withBaseUrl("http://localhost:" + port);
+    }
+
+    @Test
+    public void addAndGet() throws Exception {
+        Coffee coffee = Coffee.builder().id("async-1").name("async-1").price(new BigDecimal("3.50")).build();
+        assertEquals(coffee, client.add(coffee).get(5, TimeUnit.SECONDS));
+
+        assertEquals(coffee, client.getById("async-1").get(5, TimeUnit.SECONDS));
+        assertEquals(coffee, client.getByName("async-1").get(5, TimeUnit.SECONDS));
+        assertNull(client.getById("async-missing").get(5, TimeUnit.SECONDS));
+        assertTrue(client.getAll().get(5, TimeUnit.SECONDS).contains(coffee));
+    }
+
+    @Test
+    public void getByIdsKeepsOrder() throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String id = "fan-" + i;
+            client.add(Coffee.builder().id(id).name(id).price(BigDecimal.valueOf(i)).build()).get(5, TimeUnit.SECONDS);
+            ids.add(id);
+        }
+        ids.add("fan-missing");
+
+        List<CompletableFuture<Coffee>> futures = client.getByIds(ids);
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        assertEquals(ids.size(), futures.size());
+        for (int i = 0; i < 200; i++) {
+            assertEquals("fan-" + i, futures.get(i).get().getId());
+        }
+        assertNull(futures.get(200).get());
+        assertTrue(client.getByIds(Arrays.asList()).isEmpty());
+    }
+}
@@ -0,0 +1,125 @@
+package com.httptest.httpdemo.controller;
+
+import com.httptest.httpdemo.model.Coffee;
+import com.httptest.httpdemo.model.CoffeeFile;
+import com.httptest.httpdemo.model.StoredFile;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.*;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CoffeeController各种参数绑定方式的功能测试, ReactiveCoffeeBindingTest对WebFlux版本运行相同的用例
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "coffee.data-dir=target/test-data")
+public class CoffeeBindingTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    public void addWithParams() {
+        Coffee coffee = restTemplate.postForObject("/coffee?id=bind-ignored&name=bind-params&price=1.5", null, Coffee.class);
+        assertEquals("bind-params", coffee.getName());
+        assertNotEquals("bind-ignored", coffee.getId());
+        assertEquals(coffee, restTemplate.getForObject("/coffee?name=bind-params", Coffee.class));
+    }
+
+    @Test
+    public void addWithModelAttribute() {
+        Coffee coffee = restTemplate.postForObject("/coffee?id=bind-model&price=2", null, Coffee.class);
+        assertEquals("bind-model", coffee.getId());
+        assertEquals(0, new BigDecimal("2").compareTo(coffee.getPrice()));
+    }
+
+    @Test
+    public void addWithBody() {
+        Coffee coffee = Coffee.builder().id("bind-body").name("bind-body").price(new BigDecimal("3.5")).build();
+        assertEquals(coffee, restTemplate.postForObject("/coffee/body", coffee, Coffee.class));
+        assertEquals(coffee, restTemplate.postForObject("/coffee/body-json", coffee, Coffee.class));
+        assertEquals(coffee, restTemplate.getForObject("/coffee/bind-body", Coffee.class));
+    }
+
+    @Test
+    public void addWithFormData() {
+        MultiValueMap<String, Object> param = new LinkedMultiValueMap<>();
+        param.add("id", "bind-form-data");
+        param.add("name", "bind-form-data");
+        param.add("price", "4");
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        Coffee coffee = restTemplate.postForObject("/coffee/form-data", new HttpEntity<>(param, headers), Coffee.class);
+        assertEquals("bind-form-data", coffee.getId());
+        assertEquals("bind-form-data", coffee.getName());
+    }
+
+    @Test
+    public void addWithFormUrlencoded() {
+        MultiValueMap<String, String> param = new LinkedMultiValueMap<>();
+        param.add("id", "bind-urlencoded");
+        param.add("name", "bind-urlencoded");
+        param.add("price", "5");
+        Coffee coffee = restTemplate.postForObject("/coffee/form-data-urlencoded", param, Coffee.class);
+        assertEquals("bind-urlencoded", coffee.getId());
+        assertEquals("bind-urlencoded", coffee.getName());
+    }
+
+    @Test
+    public void addWithJsonParams() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        HttpEntity<String> request = new HttpEntity<>("{\"name\":\"ignored\"}", headers);
+        Coffee coffee = restTemplate.postForObject("/coffee/json?id=bind-json&name=bind-json", request, Coffee.class);
+        assertEquals("bind-json", coffee.getName());
+    }
+
+    @Test
+    public void find() {
+        restTemplate.postForObject("/coffee/body", Coffee.builder().id("bind-find").name("bind-find").build(), Coffee.class);
+        assertEquals("bind-find", restTemplate.getForObject("/coffee/find?id=bind-find&name=x", Coffee.class).getId());
+        assertEquals("bind-find", restTemplate.getForObject("/coffee/findById?id=bind-find", Coffee.class).getName());
+        assertEquals(HttpStatus.NOT_FOUND, restTemplate.getForEntity("/coffee/bind-missing", String.class).getStatusCode());
+    }
+
+    @Test
+    public void uploads() {
+        StoredFile stored = restTemplate.postForObject("/coffee/upload1", files("a.txt"), StoredFile.class);
+        assertEquals("a.txt", stored.getFileName());
+        assertEquals(5, stored.getSize());
+
+        StoredFile[] storedFiles = restTemplate.postForObject("/coffee/upload2", files("a.txt", "b.txt"), StoredFile[].class);
+        assertEquals(2, storedFiles.length);
+        assertEquals("a.txt", storedFiles[0].getFileName());
+        assertEquals("b.txt", storedFiles[1].getFileName());
+
+        MultiValueMap<String, Object> param = files("c.txt");
+        param.add("name", "bind-upload");
+        CoffeeFile coffeeFile = restTemplate.postForObject("/coffee/upload3", param, CoffeeFile.class);
+        assertEquals("bind-upload", coffeeFile.getName());
+        assertEquals("c.txt", coffeeFile.getFileName());
+        assertNotNull(coffeeFile.getSha256());
+    }
+
+    private static MultiValueMap<String, Object> files(String... names) {
+        MultiValueMap<String, Object> param = new LinkedMultiValueMap<>();
+        for (String name : names) {
+            param.add(name.equals(names[0]) ? "file" : name, new ByteArrayResource("hello".getBytes(StandardCharsets.UTF_8)) {
+                @Override
+                public String getFilename() {
+                    return name;
+                }
+            });
+        }
+        return param;
+    }
+}
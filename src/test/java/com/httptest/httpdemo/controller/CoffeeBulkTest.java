@@ -0,0 +1,80 @@
+package com.httptest.httpdemo.controller;
+
+import com.httptest.httpdemo.model.BulkItemResult;
+import com.httptest.httpdemo.model.Coffee;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "coffee.data-dir=target/test-data")
+public class CoffeeBulkTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    public void bulkJsonArray() {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < 1200; i++) {
+            body.append(i == 0 ? "" : ",").append("{\"id\":\"bulk-").append(i).append("\",\"name\":\"bulk ").append(i).append("\",\"price\":").append(i).append("}");
+        }
+        body.append("]");
+
+        BulkItemResult[] results = post(body.toString(), MediaType.APPLICATION_JSON);
+
+        assertEquals(1200, results.length);
+        assertTrue(Arrays.stream(results).allMatch(r -> r.getStatus() == 200));
+        assertEquals("bulk-1199", results[1199].getId());
+        assertEquals("bulk 7", restTemplate.getForObject("/coffee/bulk-7", Coffee.class).getName());
+    }
+
+    @Test
+    public void bulkNdjsonWithInvalidItem() {
+        String body = "{\"name\":\"nd-1\",\"price\":1}\n{\"price\":\"abc\",\"name\":\"nd-2\",\"tags\":{\"a\":[1]}}\n{\"name\":\"nd-3\",\"price\":\"3\"}\n";
+
+        BulkItemResult[] results = post(body, MediaType.APPLICATION_NDJSON);
+
+        assertEquals(3, results.length);
+        assertEquals(200, results[0].getStatus());
+        assertEquals(400, results[1].getStatus());
+        assertNotNull(results[1].getError());
+        assertEquals(200, results[2].getStatus());
+        assertNotNull(restTemplate.getForObject("/coffee?name=nd-3", Coffee.class));
+    }
+
+    @Test
+    public void bulkStopsOnSyntaxError() {
+        BulkItemResult[] results = post("[{\"name\":\"syntax-1\"},{\"name\":", MediaType.APPLICATION_JSON);
+
+        assertEquals(2, results.length);
+        assertEquals(200, results[0].getStatus());
+        assertEquals(400, results[1].getStatus());
+    }
+
+    @Test
+    public void mget() {
+        restTemplate.postForObject("/coffee/body", Coffee.builder().id("mget-1").name("mget one").build(), Coffee.class);
+        restTemplate.postForObject("/coffee/body", Coffee.builder().id("mget-2").name("mget two").build(), Coffee.class);
+
+        Coffee[] result = restTemplate.postForObject("/coffee/_mget", Arrays.asList("mget-2", "missing", "mget-1"), Coffee[].class);
+
+        assertEquals(2, result.length);
+        assertEquals("mget-2", result[0].getId());
+        assertEquals("mget-1", result[1].getId());
+    }
+
+    private BulkItemResult[] post(String body, MediaType contentType) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(contentType);
+        return restTemplate.postForObject("/coffee/_bulk", new HttpEntity<>(body, headers), BulkItemResult[].class);
+    }
+}
@@ -0,0 +1,103 @@
+package com.httptest.httpdemo.controller;
+
+import com.httptest.httpdemo.model.StoredFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.*;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "coffee.data-dir=target/test-data")
+public class CoffeeFileControllerTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private byte[] content;
+    private StoredFile stored;
+
+    @BeforeEach
+    public void upload() {
+        //大于sendfile阈值, 覆盖sendfile路径
+        content = new byte[200 * 1024];
+        new Random(7).nextBytes(content);
+        MultiValueMap<String, Object> param = new LinkedMultiValueMap<>();
+        param.add("file", new ByteArrayResource(content) {
+            @Override
+            public String getFilename() {
+                return "big.bin";
+            }
+        });
+        stored = restTemplate.postForObject("/coffee/upload", param, StoredFile.class);
+    }
+
+    @Test
+    public void downloadWhole() {
+        ResponseEntity<byte[]> result = restTemplate.getForEntity("/coffee/files/{id}", byte[].class, stored.getId());
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        assertArrayEquals(content, result.getBody());
+        assertEquals("\"" + stored.getSha256() + "\"", result.getHeaders().getETag());
+        assertEquals("bytes", result.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES));
+    }
+
+    @Test
+    public void downloadRange() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=100000-");
+        ResponseEntity<byte[]> result = exchange(headers);
+        assertEquals(HttpStatus.PARTIAL_CONTENT, result.getStatusCode());
+        assertEquals("bytes 100000-" + (content.length - 1) + "/" + content.length, result.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(Arrays.copyOfRange(content, 100000, content.length), result.getBody());
+
+        headers.set(HttpHeaders.RANGE, "bytes=10-19");
+        result = exchange(headers);
+        assertArrayEquals(Arrays.copyOfRange(content, 10, 20), result.getBody());
+
+        headers.set(HttpHeaders.RANGE, "bytes=" + content.length + "-");
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, exchange(headers).getStatusCode());
+    }
+
+    @Test
+    public void ifRangeMismatchReturnsWholeFile() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=10-19");
+        headers.set(HttpHeaders.IF_RANGE, "\"other\"");
+        ResponseEntity<byte[]> result = exchange(headers);
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        assertEquals(content.length, result.getBody().length);
+    }
+
+    @Test
+    public void ifNoneMatchReturnsNotModified() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch("\"" + stored.getSha256() + "\"");
+        assertEquals(HttpStatus.NOT_MODIFIED, exchange(headers).getStatusCode());
+    }
+
+    @Test
+    public void unknownFile() {
+        assertEquals(HttpStatus.NOT_FOUND, restTemplate.getForEntity("/coffee/files/none", byte[].class).getStatusCode());
+    }
+
+    @Test
+    public void delete() {
+        ResponseEntity<Void> result = restTemplate.exchange("/coffee/files/{id}", HttpMethod.DELETE, null, Void.class, stored.getId());
+        assertEquals(HttpStatus.NO_CONTENT, result.getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, restTemplate.getForEntity("/coffee/files/{id}", byte[].class, stored.getId()).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, restTemplate.exchange("/coffee/files/{id}", HttpMethod.DELETE, null, Void.class, stored.getId()).getStatusCode());
+    }
+
+    private ResponseEntity<byte[]> exchange(HttpHeaders headers) {
+        return restTemplate.exchange("/coffee/files/{id}", HttpMethod.GET, new HttpEntity<>(headers), byte[].class, stored.getId());
+    }
+}
@@ -0,0 +1,50 @@
+package com.httptest.httpdemo.controller;
+
+import com.httptest.httpdemo.model.Coffee;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "coffee.data-dir=target/test-data")
+public class CoffeeSearchControllerTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    public void searchSeesNewCoffees() {
+        String name = "Searchable Flat White " + System.nanoTime();
+        restTemplate.postForObject("/coffee/body", Coffee.builder().name(name).price(new BigDecimal(25)).build(), Coffee.class);
+
+        Coffee[] byPrefix = restTemplate.getForObject("/coffee/search?prefix=searchable flat", Coffee[].class);
+        assertTrue(byPrefix.length >= 1);
+        assertTrue(byPrefix[0].getName().startsWith("Searchable Flat White"));
+
+        Coffee[] byContains = restTemplate.getForObject("/coffee/search?contains={text}", Coffee[].class, name.substring(11).toLowerCase());
+        assertEquals(1, byContains.length);
+        assertEquals(name, byContains[0].getName());
+
+        Coffee[] byFuzzy = restTemplate.getForObject("/coffee/search?fuzzy={text}&limit=1", Coffee[].class, name.replace("White", "Whyte"));
+        assertEquals(name, byFuzzy[0].getName());
+    }
+
+    @Test
+    public void rejectsInvalidQueries() {
+        ResponseEntity<String> none = restTemplate.getForEntity("/coffee/search", String.class);
+        assertEquals(HttpStatus.BAD_REQUEST, none.getStatusCode());
+
+        ResponseEntity<String> both = restTemplate.getForEntity("/coffee/search?prefix=a&contains=b", String.class);
+        assertEquals(HttpStatus.BAD_REQUEST, both.getStatusCode());
+
+        ResponseEntity<String> limit = restTemplate.getForEntity("/coffee/search?prefix=a&limit=0", String.class);
+        assertEquals(HttpStatus.BAD_REQUEST, limit.getStatusCode());
+    }
+}
@@ -0,0 +1,39 @@
+package com.httptest.httpdemo.controller;
+
+import com.httptest.httpdemo.model.Coffee;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.*;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "coffee.data-dir=target/test-data")
+public class CoffeeStreamTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    public void ndjson() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(Collections.singletonList(MediaType.APPLICATION_NDJSON));
+        ResponseEntity<String> result = restTemplate.exchange("/coffee", HttpMethod.GET, new HttpEntity<>(headers), String.class);
+
+        assertEquals(MediaType.APPLICATION_NDJSON, result.getHeaders().getContentType());
+        String[] lines = result.getBody().split("\n");
+        assertEquals(restTemplate.getForObject("/coffee", Coffee[].class).length, lines.length);
+        assertTrue(lines[0].startsWith("{\"id\":"));
+    }
+
+    @Test
+    public void chunkedJsonArray() {
+        Coffee[] streamed = restTemplate.getForObject("/coffee?stream=true", Coffee[].class);
+        Coffee[] all = restTemplate.getForObject("/coffee", Coffee[].class);
+        assertArrayEquals(all, streamed);
+    }
+}
@@ -0,0 +1,116 @@
+package com.httptest.httpdemo.controller;
+
+import com.httptest.httpdemo.limit.UploadBulkhead;
+import com.httptest.httpdemo.model.StoredFile;
+import com.httptest.httpdemo.model.UploadSession;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "coffee.data-dir=target/test-data")
+public class CoffeeUploadControllerTest {
+
+    private static final int CHUNK = 64 * 1024;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private UploadBulkhead uploadBulkhead;
+
+    @Test
+    public void parallelOutOfOrderChunks() {
+        byte[] content = new byte[10 * CHUNK + 123];
+        new Random(20).nextBytes(content);
+        UploadSession session = create("resumable.bin", content.length);
+        long accepted = (Long) uploadBulkhead.stats().get("accepted");
+
+        List<CompletableFuture<ResponseEntity<UploadSession>>> futures = new ArrayList<>();
+        for (int start = (content.length / CHUNK) * CHUNK; start >= 0; start -= CHUNK) {
+            int from = start;
+            futures.add(CompletableFuture.supplyAsync(() -> put(session.getId(), content, from, Math.min(from + CHUNK, content.length))));
+        }
+        for (CompletableFuture<ResponseEntity<UploadSession>> future : futures) {
+            assertEquals(HttpStatus.OK, future.join().getStatusCode());
+        }
+        UploadSession state = restTemplate.getForObject("/coffee/uploads/{id}", UploadSession.class, session.getId());
+        assertEquals(content.length, state.getOffset());
+        assertEquals(1, state.getRanges().size());
+        //分片在隔离线程池上写入
+        assertEquals(accepted + futures.size(), uploadBulkhead.stats().get("accepted"));
+
+        StoredFile stored = restTemplate.postForObject("/coffee/uploads/{id}/complete", null, StoredFile.class, session.getId());
+        assertEquals("resumable.bin", stored.getFileName());
+        assertEquals(content.length, stored.getSize());
+        assertArrayEquals(content, restTemplate.getForObject("/coffee/files/{id}", byte[].class, stored.getId()));
+        assertEquals(HttpStatus.NOT_FOUND, restTemplate.getForEntity("/coffee/uploads/{id}", String.class, session.getId()).getStatusCode());
+    }
+
+    @Test
+    public void resumeFromOffset() {
+        byte[] content = new byte[3 * CHUNK];
+        new Random(21).nextBytes(content);
+        UploadSession session = create("resume.bin", content.length);
+
+        put(session.getId(), content, 0, CHUNK);
+        put(session.getId(), content, 2 * CHUNK, 3 * CHUNK);
+        UploadSession state = restTemplate.getForObject("/coffee/uploads/{id}", UploadSession.class, session.getId());
+        assertEquals(CHUNK, state.getOffset());
+        assertEquals(2 * CHUNK, state.getReceived());
+        assertEquals(HttpStatus.CONFLICT, complete(session.getId(), null).getStatusCode());
+
+        put(session.getId(), content, (int) state.getOffset(), 2 * CHUNK);
+        assertEquals(HttpStatus.BAD_REQUEST, complete(session.getId(), "00").getStatusCode());
+        ResponseEntity<StoredFile> completed = complete(session.getId(), null);
+        assertEquals(HttpStatus.OK, completed.getStatusCode());
+        assertArrayEquals(content, restTemplate.getForObject("/coffee/files/{id}", byte[].class, completed.getBody().getId()));
+    }
+
+    @Test
+    public void invalidRange() {
+        UploadSession session = create("small.bin", 10);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.CONTENT_RANGE, "bytes 5-14/10");
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        ResponseEntity<String> result = restTemplate.exchange("/coffee/uploads/{id}", HttpMethod.PUT,
+                new HttpEntity<>(new byte[10], headers), String.class, session.getId());
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, result.getStatusCode());
+
+        assertEquals(HttpStatus.NO_CONTENT, restTemplate.exchange("/coffee/uploads/{id}", HttpMethod.DELETE, null, Void.class, session.getId()).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, restTemplate.getForEntity("/coffee/uploads/{id}", String.class, session.getId()).getStatusCode());
+    }
+
+    private UploadSession create(String fileName, long size) {
+        ResponseEntity<UploadSession> result = restTemplate.postForEntity("/coffee/uploads?fileName={fileName}&size={size}", null,
+                UploadSession.class, fileName, size);
+        assertEquals(HttpStatus.CREATED, result.getStatusCode());
+        assertEquals("/coffee/uploads/" + result.getBody().getId(), result.getHeaders().getLocation().toString());
+        return result.getBody();
+    }
+
+    private ResponseEntity<UploadSession> put(String id, byte[] content, int from, int to) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + from + "-" + (to - 1) + "/" + content.length);
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        return restTemplate.exchange("/coffee/uploads/{id}", HttpMethod.PUT,
+                new HttpEntity<>(Arrays.copyOfRange(content, from, to), headers), UploadSession.class, id);
+    }
+
+    private ResponseEntity<StoredFile> complete(String id, String sha256) {
+        if (sha256 == null) {
+            return restTemplate.postForEntity("/coffee/uploads/{id}/complete", null, StoredFile.class, id);
+        }
+        return restTemplate.postForEntity("/coffee/uploads/{id}/complete?sha256={sha256}", null, StoredFile.class, id, sha256);
+    }
+}
@@ -0,0 +1,38 @@
+package com.httptest.httpdemo.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 上传超过spring.servlet.multipart的大小上限
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"coffee.data-dir=target/test-data-upload-limit",
+                "spring.servlet.multipart.max-file-size=64KB", "spring.servlet.multipart.max-request-size=64KB"})
+public class CoffeeUploadLimitTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    public void uploadTooLarge() {
+        MultiValueMap<String, Object> param = new LinkedMultiValueMap<>();
+        param.add("file", new ByteArrayResource(new byte[128 * 1024]) {
+            @Override
+            public String getFilename() {
+                return "too-large.bin";
+            }
+        });
+        ResponseEntity<String> result = restTemplate.postForEntity("/coffee/upload", param, String.class);
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, result.getStatusCode());
+    }
+}
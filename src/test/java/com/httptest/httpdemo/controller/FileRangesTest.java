@@ -0,0 +1,40 @@
+package com.httptest.httpdemo.controller;
+
+import com.httptest.httpdemo.model.StoredFile;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileRangesTest {
+
+    @Test
+    public void select() {
+        FileRanges.Selection whole = FileRanges.select(null, null, "\"a\"", 100);
+        assertEquals(HttpStatus.OK, whole.getStatus());
+        assertEquals(100, whole.getCount());
+        assertNull(whole.contentRange());
+
+        FileRanges.Selection partial = FileRanges.select("bytes=10-19", "\"a\"", "\"a\"", 100);
+        assertEquals(HttpStatus.PARTIAL_CONTENT, partial.getStatus());
+        assertEquals(10, partial.getStart());
+        assertEquals(10, partial.getCount());
+        assertEquals("bytes 10-19/100", partial.contentRange());
+
+        assertEquals(HttpStatus.OK, FileRanges.select("bytes=10-19", "\"b\"", "\"a\"", 100).getStatus());
+        assertEquals(HttpStatus.OK, FileRanges.select("bytes=0-1,5-6", null, "\"a\"", 100).getStatus());
+        assertEquals(HttpStatus.OK, FileRanges.select("pages=1", null, "\"a\"", 100).getStatus());
+
+        FileRanges.Selection unsatisfiable = FileRanges.select("bytes=100-", null, "\"a\"", 100);
+        assertFalse(unsatisfiable.isSatisfiable());
+        assertEquals("bytes */100", unsatisfiable.contentRange());
+    }
+
+    @Test
+    public void malformedContentTypeFallsBackToOctetStream() {
+        assertEquals(MediaType.APPLICATION_OCTET_STREAM, FileRanges.contentType(StoredFile.builder().contentType("not a media type").build()));
+        assertEquals(MediaType.APPLICATION_OCTET_STREAM, FileRanges.contentType(StoredFile.builder().build()));
+        assertEquals(MediaType.TEXT_PLAIN, FileRanges.contentType(StoredFile.builder().contentType("text/plain").build()));
+    }
+}
@@ -0,0 +1,35 @@
+package com.httptest.httpdemo.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.*;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 对WebFlux版本运行CoffeeBulkTest的用例
+ */
+@ActiveProfiles("reactive")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"coffee.data-dir=target/test-data-reactive-bulk", "coffee.bulk.max-bytes=98304"})
+public class ReactiveCoffeeBulkTest extends CoffeeBulkTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    public void bulkTooLarge() {
+        StringBuilder body = new StringBuilder();
+        while (body.length() <= 98304) {
+            body.append("{\"name\":\"too large\",\"price\":1}\n");
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_NDJSON);
+        ResponseEntity<String> result = restTemplate.postForEntity("/coffee/_bulk", new HttpEntity<>(body.toString(), headers), String.class);
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, result.getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, restTemplate.getForEntity("/coffee?name=too large", String.class).getStatusCode());
+    }
+}
@@ -0,0 +1,13 @@
+package com.httptest.httpdemo.controller;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * 对WebFlux版本运行CoffeeFileControllerTest的用例
+ */
+@ActiveProfiles("reactive")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "coffee.data-dir=target/test-data-reactive")
+public class ReactiveCoffeeFileControllerTest extends CoffeeFileControllerTest {
+}
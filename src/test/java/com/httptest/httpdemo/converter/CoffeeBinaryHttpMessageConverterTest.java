@@ -0,0 +1,102 @@
+package com.httptest.httpdemo.converter;
+
+import com.httptest.httpdemo.model.Coffee;
+import com.httptest.httpdemo.model.CoffeeFile;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.*;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "coffee.data-dir=target/test-data")
+public class CoffeeBinaryHttpMessageConverterTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate testRestTemplate;
+
+    private RestTemplate restTemplate = new RestTemplate();
+
+    {
+        restTemplate.getMessageConverters().add(new CoffeeBinaryHttpMessageConverter());
+    }
+
+    @Test
+    public void codecRoundTrip() throws Exception {
+        CoffeeFile file = new CoffeeFile("a.txt", "f1", 12L, "abc");
+        file.setId("1");
+        file.setPrice(new BigDecimal("123456789012345678901234567890.5"));
+        List<Coffee> coffees = Arrays.asList(
+                Coffee.builder().id("1").name("mocha").price(new BigDecimal("12.50")).build(),
+                Coffee.builder().name("拿铁").build(),
+                file);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CoffeeBinaryCodec.writeAll(coffees, bytes);
+        List<Coffee> decoded = CoffeeBinaryCodec.readAll(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertEquals(coffees, decoded);
+        assertEquals(2, decoded.get(0).getPrice().scale());
+    }
+
+    @Test
+    public void negotiatedByAccept() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(Collections.singletonList(CoffeeBinaryHttpMessageConverter.COFFEE_BINARY));
+        ResponseEntity<Coffee> single = restTemplate.exchange(url("/coffee/1"), HttpMethod.GET, new HttpEntity<>(headers), Coffee.class);
+        assertEquals(CoffeeBinaryHttpMessageConverter.COFFEE_BINARY, single.getHeaders().getContentType());
+        assertEquals("1", single.getBody().getId());
+
+        ResponseEntity<List<Coffee>> list = restTemplate.exchange(url("/coffee"), HttpMethod.GET, new HttpEntity<>(headers),
+                new ParameterizedTypeReference<List<Coffee>>() {});
+        assertEquals(CoffeeBinaryHttpMessageConverter.COFFEE_BINARY, list.getHeaders().getContentType());
+        assertFalse(list.getBody().isEmpty());
+
+        //未指定时仍为json
+        assertEquals(MediaType.APPLICATION_JSON, testRestTemplate.getForEntity("/coffee/1", String.class).getHeaders().getContentType());
+    }
+
+    @Test
+    public void binaryRequestBody() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(CoffeeBinaryHttpMessageConverter.COFFEE_BINARY);
+        headers.setAccept(Collections.singletonList(CoffeeBinaryHttpMessageConverter.COFFEE_BINARY));
+        Coffee coffee = Coffee.builder().id("bin-1").name("binary").price(new BigDecimal("9.99")).build();
+
+        Coffee result = restTemplate.postForObject(url("/coffee/body"), new HttpEntity<>(coffee, headers), Coffee.class);
+
+        assertEquals(coffee, result);
+    }
+
+    @Test
+    public void typeMismatchIsNotReadable() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CoffeeBinaryCodec.write(Coffee.builder().id("1").name("mocha").build(), bytes);
+        CoffeeBinaryHttpMessageConverter converter = new CoffeeBinaryHttpMessageConverter();
+
+        assertThrows(HttpMessageNotReadableException.class,
+                () -> converter.read(CoffeeFile.class, null, new MockHttpInputMessage(bytes.toByteArray())));
+        assertEquals("mocha", ((Coffee) converter.read(Coffee.class, null, new MockHttpInputMessage(bytes.toByteArray()))).getName());
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + port + path;
+    }
+}
@@ -0,0 +1,90 @@
+package com.httptest.httpdemo.converter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.httptest.httpdemo.model.Coffee;
+import com.httptest.httpdemo.model.CoffeeFile;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "coffee.data-dir=target/test-data")
+public class CoffeeJsonCodecTest {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    public void writeMatchesJackson() throws Exception {
+        CoffeeFile file = new CoffeeFile("文件 \"a\".txt", "f1", 12L, null);
+        file.setPrice(new BigDecimal("1E+3"));
+        List<Coffee> coffees = Arrays.asList(
+                Coffee.builder().id("1").name("mocha").price(new BigDecimal("12.50")).build(),
+                Coffee.builder().name("拿铁\n\t\u0001").build(),
+                new Coffee(),
+                file);
+
+        for (Coffee coffee : coffees) {
+            assertEquals(objectMapper.writeValueAsString(coffee), write(coffee));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            CoffeeJsonCodec.writeAll(coffees, generator);
+        }
+        assertEquals(objectMapper.writeValueAsString(coffees), out.toString("UTF-8"));
+    }
+
+    @Test
+    public void readMatchesJackson() throws Exception {
+        String[] inputs = {
+                "{\"id\":\"1\",\"name\":\"mmoc\",\"price\":\"100\"}",
+                "{\"id\":1,\"name\":true,\"price\":12.345,\"unknown\":{\"a\":[1,2]}}",
+                "{\"price\":null,\"name\":null}",
+                "{}"
+        };
+        for (String input : inputs) {
+            assertEquals(objectMapper.readValue(input, Coffee.class), read(input, Coffee.class));
+        }
+        String file = "{\"id\":\"2\",\"fileName\":\"a.txt\",\"size\":\"5\",\"sha256\":\"abc\",\"price\":1}";
+        assertEquals(objectMapper.readValue(file, CoffeeFile.class), read(file, CoffeeFile.class));
+    }
+
+    @Test
+    public void endpointsUseCodec() {
+        String body = "{\"id\":\"json-1\",\"name\":\"codec\",\"price\":\"1.50\"}";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        String result = restTemplate.postForObject("/coffee/body-json", new HttpEntity<>(body, headers), String.class);
+        assertEquals("{\"id\":\"json-1\",\"name\":\"codec\",\"price\":1.50}", result);
+    }
+
+    private String write(Coffee coffee) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            CoffeeJsonCodec.write(coffee, generator);
+        }
+        return out.toString("UTF-8");
+    }
+
+    private Coffee read(String json, Class<? extends Coffee> type) throws Exception {
+        try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+            return CoffeeJsonCodec.read(parser, type);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.httptest.httpdemo.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(40);
+
+    @Test
+    public void rejectsAboveLimit() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(2, 1, 10);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(1, limiter.getRejected());
+        assertEquals(2, limiter.getInFlight());
+
+        limiter.release(System.nanoTime());
+        assertEquals(1, limiter.getInFlight());
+        assertTrue(limiter.tryAcquire());
+        assertEquals(3, limiter.getAccepted());
+    }
+
+    @Test
+    public void growsWhileLatencyIsStable() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(10, 4, 100);
+        for (int i = 0; i < 200; i++) {
+            limiter.sample(FAST, limiter.getLimit());
+        }
+        assertEquals(100, limiter.getLimit());
+    }
+
+    @Test
+    public void doesNotGrowWhenUnderused() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(10, 4, 100);
+        for (int i = 0; i < 200; i++) {
+            limiter.sample(FAST, 1);
+        }
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    public void shrinksWhenLatencyRisesAndRecovers() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(50, 4, 100);
+        for (int i = 0; i < 1000; i++) {
+            limiter.sample(FAST, limiter.getLimit());
+        }
+        assertEquals(100, limiter.getLimit());
+
+        //请求开始排队
+        for (int i = 0; i < 50; i++) {
+            limiter.sample(SLOW, limiter.getLimit());
+        }
+        int shrunk = limiter.getLimit();
+        assertTrue(shrunk < 20, "limit " + shrunk);
+        assertTrue(shrunk >= 4);
+
+        for (int i = 0; i < 200; i++) {
+            limiter.sample(FAST, limiter.getLimit());
+        }
+        assertTrue(limiter.getLimit() > shrunk * 2, "limit " + limiter.getLimit());
+    }
+}
@@ -0,0 +1,58 @@
+package com.httptest.httpdemo.limit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrencyLimitFilterTest {
+
+    private final ConcurrencyLimits limits = new ConcurrencyLimits(true, 1, 1, 1);
+    private final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(limits);
+
+    @Test
+    public void rejectsWhenGroupIsFull() throws Exception {
+        AdaptiveLimiter upload = limits.group(ConcurrencyLimits.UPLOAD);
+        assertTrue(upload.tryAcquire());
+
+        MockHttpServletResponse rejected = doFilter("POST", "/coffee/upload");
+        assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, rejected.getStatus());
+        assertEquals("1", rejected.getHeader(HttpHeaders.RETRY_AFTER));
+        assertEquals(1, upload.getRejected());
+
+        //其他分组不受影响
+        assertEquals(HttpServletResponse.SC_OK, doFilter("GET", "/coffee/1").getStatus());
+        assertEquals(HttpServletResponse.SC_OK, doFilter("POST", "/coffee/body").getStatus());
+        assertEquals(0, limits.group(ConcurrencyLimits.READ).getInFlight());
+        assertEquals(0, limits.group(ConcurrencyLimits.WRITE).getInFlight());
+        //运行状态接口不受限制
+        assertEquals(HttpServletResponse.SC_OK, doFilter("GET", "/coffee/_stats/limits").getStatus());
+    }
+
+    @Test
+    public void asyncRequestReleasesOnComplete() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/coffee");
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, (req, res) -> req.startAsync());
+
+        AdaptiveLimiter read = limits.group(ConcurrencyLimits.READ);
+        assertEquals(1, read.getInFlight());
+        assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, doFilter("GET", "/coffee").getStatus());
+
+        request.getAsyncContext().complete();
+        assertEquals(0, read.getInFlight());
+        assertEquals(HttpServletResponse.SC_OK, doFilter("GET", "/coffee").getStatus());
+    }
+
+    private MockHttpServletResponse doFilter(String method, String uri) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest(method, uri), response, new MockFilterChain());
+        return response;
+    }
+}
@@ -0,0 +1,75 @@
+package com.httptest.httpdemo.limit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UploadBulkheadTest {
+
+    private final UploadBulkhead bulkhead = new UploadBulkhead(1, 1, 100, 60_000);
+
+    @AfterEach
+    public void tearDown() {
+        bulkhead.destroy();
+    }
+
+    @Test
+    public void runsOnBulkheadThreadAndReleases() throws Exception {
+        WebAsyncTask<String> task = bulkhead.submit(request(10), () -> Thread.currentThread().getName());
+        Future<?> result = task.getExecutor().submit(task.getCallable());
+        assertTrue(((String) result.get(5, TimeUnit.SECONDS)).startsWith("upload-request-"));
+        assertEquals(60_000L, task.getTimeout());
+        assertEquals(0, bulkhead.stats().get("inFlight"));
+        assertEquals(0L, bulkhead.stats().get("bytes"));
+    }
+
+    @Test
+    public void rejectsWhenTasksAreExhausted() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        WebAsyncTask<Object> running = bulkhead.submit(request(1), () -> release.await(5, TimeUnit.SECONDS));
+        WebAsyncTask<Object> queued = bulkhead.submit(request(1), () -> null);
+
+        BulkheadFullException e = assertThrows(BulkheadFullException.class, () -> bulkhead.submit(request(1), () -> null));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatus());
+        assertEquals("1", e.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(1L, bulkhead.stats().get("rejected"));
+
+        Future<?> first = running.getExecutor().submit(running.getCallable());
+        Future<?> second = queued.getExecutor().submit(queued.getCallable());
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(0, bulkhead.stats().get("inFlight"));
+    }
+
+    @Test
+    public void byteBudget() {
+        assertTrue(bulkhead.tryAcquire(60));
+        assertFalse(bulkhead.tryAcquire(50));
+        //长度未知的请求只受请求数限制
+        assertTrue(bulkhead.tryAcquire(0));
+        bulkhead.release(60);
+        bulkhead.release(0);
+
+        //超过预算的单个请求只在空闲时接受
+        assertTrue(bulkhead.tryAcquire(500));
+        assertFalse(bulkhead.tryAcquire(1));
+        bulkhead.release(500);
+        assertTrue(bulkhead.tryAcquire(1));
+    }
+
+    private static MockHttpServletRequest request(int length) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/coffee/upload");
+        request.setContent(new byte[length]);
+        return request;
+    }
+}
@@ -0,0 +1,247 @@
+package com.httptest.httpdemo.load;
+
+import com.httptest.httpdemo.model.Coffee;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.*;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 用GetTest/PostTest/ExchangeTest中的调用方式对随机端口上的应用做混合压测, 输出每个接口的p50/p99/p999和吞吐量
+ * 默认不执行, 通过系统属性开启和配置:
+ * <pre>
+ * mvn test -Dtest=CoffeeLoadTest -Dload=true
+ *   -Dload.mode=closed|open|both   默认closed
+ *   -Dload.workers=16              并发线程数
+ *   -Dload.client=pooled|simple    默认pooled
+ *   -Dload.rate=2000               open-loop每秒请求数
+ *   -Dload.warmup=2                预热秒数
+ *   -Dload.duration=10             压测秒数
+ *   -Dload.mix=getById=4,postBody=1   各接口权重, 不指定时使用默认权重
+ *   -Dload.maxP99=50               可选, 任一接口p99超过该毫秒数则失败
+ *   -Dload.slowUploadMillis=50     slowUpload每发送1KB后暂停的毫秒数
+ * </pre>
+ * 慢速上传占用Tomcat线程的对比, 少量线程下平台线程池与虚拟线程(JDK 21+):
+ * <pre>
+ * mvn test -Dtest=CoffeeLoadTest -Dload=true -Dload.mix=getById=8,slowUpload=2 -Dserver.tomcat.threads.max=8
+ * mvn test -Dtest=CoffeeLoadTest -Dload=true -Dload.mix=getById=8,slowUpload=2 -Dserver.tomcat.threads.max=8 -Dcoffee.server.virtual-threads=true
+ * </pre>
+ * servlet(Tomcat)与WebFlux(Netty)版本的对比, 除延迟外还输出服务端线程数、堆内存和GC次数(客户端在同一个JVM中, 堆和GC包含客户端的开销):
+ * <pre>
+ * mvn test -Dtest=CoffeeLoadTest -Dload=true -Dload.mode=both
+ * mvn test -Dtest=CoffeeLoadTest -Dload=true -Dload.mode=both -Dspring.profiles.active=reactive
+ * </pre>
+ * 过载时开启并发数限制的对比, 超出限制的请求快速返回503, 输出中计为rejected:
+ * <pre>
+ * mvn test -Dtest=CoffeeLoadTest -Dload=true -Dload.mode=open -Dload.rate=3000 -Dload.workers=200
+ * mvn test -Dtest=CoffeeLoadTest -Dload=true -Dload.mode=open -Dload.rate=3000 -Dload.workers=200 -Dcoffee.limit.enabled=true
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "load", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"coffee.data-dir=target/load-data", "logging.level.root=WARN"})
+public class CoffeeLoadTest {
+
+    /**
+     * 读接口使用load-0..load-99, 写接口使用load-write-*, 避免写请求改名导致按name查询404
+     */
+    private static final int SEED_COUNT = 100;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private RestTemplate coffeeRestTemplate;
+
+    @Autowired
+    private HttpComponentsClientHttpRequestFactory coffeeClientHttpRequestFactory;
+
+    private RestTemplate restTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        //默认使用连接池客户端, -Dload.client=simple时使用RestTemplate默认的SimpleClientHttpRequestFactory(HttpURLConnection)作对比
+        restTemplate = new RestTemplate(coffeeRestTemplate.getMessageConverters());
+        if (!"simple".equals(System.getProperty("load.client"))) {
+            restTemplate.setRequestFactory(coffeeClientHttpRequestFactory);
+        }
+        restTemplate.setUriTemplateHandler(new DefaultUriBuilderFactory("http://localhost:" + port));
+        for (int i = 0; i < SEED_COUNT; i++) {
+            restTemplate.postForObject("/coffee/body", coffee("load-", i), Coffee.class);
+        }
+    }
+
+    @Test
+    public void load() throws Exception {
+        String mode = System.getProperty("load.mode", "closed");
+        int workers = Integer.getInteger("load.workers", 16);
+        long warmup = Integer.getInteger("load.warmup", 2) * 1000L;
+        long duration = Integer.getInteger("load.duration", 10) * 1000L;
+
+        if ("closed".equals(mode) || "both".equals(mode)) {
+            Map<String, LoadGenerator.Stats> stats = generator().runClosed(workers, warmup, duration);
+            System.out.println("closed-loop, workers=" + workers);
+            verify(stats);
+        }
+        if ("open".equals(mode) || "both".equals(mode)) {
+            int rate = Integer.getInteger("load.rate", 2000);
+            Map<String, LoadGenerator.Stats> stats = generator().runOpen(workers, rate, warmup, duration);
+            System.out.println("open-loop, workers=" + workers + ", rate=" + rate + "/s");
+            verify(stats);
+        }
+    }
+
+    private LoadGenerator generator() {
+        byte[] file = new byte[1024];
+        Arrays.fill(file, (byte) 'a');
+        ParameterizedTypeReference<List<Coffee>> listType = new ParameterizedTypeReference<List<Coffee>>() {};
+
+        return new LoadGenerator()
+                .add("getAll", 1, () -> restTemplate.getForObject("/coffee", String.class))
+                .add("exchangeAll", 1, () -> restTemplate.exchange("/coffee", HttpMethod.GET, null, listType))
+                .add("getByName", 4, () -> restTemplate.getForObject("/coffee?name={name}", Coffee.class, "load-" + random()))
+                .add("getById", 8, () -> restTemplate.getForObject("/coffee/{id}", Coffee.class, "load-" + random()))
+                .add("findById", 2, () -> restTemplate.getForObject("/coffee/findById?id={id}", Coffee.class, "load-" + random()))
+                .add("find", 2, () -> restTemplate.getForObject("/coffee/find?id=1&name=mocha&price=100", Coffee.class))
+                .add("postParams", 1, () -> restTemplate.postForObject("/coffee?name={name}&price={price}", null, Coffee.class, "load-new", "10"))
+                .add("postForm", 1, () -> {
+                    MultiValueMap<String, Object> form = new LinkedMultiValueMap<>();
+                    form.add("id", "load-write-" + random());
+                    form.add("price", "20");
+                    HttpHeaders headers = new HttpHeaders();
+                    headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+                    restTemplate.postForObject("/coffee", new HttpEntity<>(form, headers), Coffee.class);
+                })
+                .add("postBody", 2, () -> restTemplate.postForObject("/coffee/body", coffee("load-write-", random()), Coffee.class))
+                .add("postFormData", 1, () -> {
+                    MultiValueMap<String, Object> form = new LinkedMultiValueMap<>();
+                    form.add("id", "load-write-" + random());
+                    form.add("name", "load-form");
+                    form.add("price", "30");
+                    HttpHeaders headers = new HttpHeaders();
+                    headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+                    restTemplate.postForObject("/coffee/form-data", new HttpEntity<>(form, headers), Coffee.class);
+                })
+                .add("upload3", 0, () -> {
+                    MultiValueMap<String, Object> form = new LinkedMultiValueMap<>();
+                    form.add("file", new ByteArrayResource(file) {
+                        @Override
+                        public String getFilename() {
+                            return "load.txt";
+                        }
+                    });
+                    form.add("name", "load-upload");
+                    restTemplate.postForObject("/coffee/upload3", form, String.class);
+                })
+                .add("slowUpload", 0, this::slowUpload)
+                .mix(System.getProperty("load.mix"));
+    }
+
+    /**
+     * 以chunked方式分8次发送8KB的multipart请求, 每次之间暂停, 模拟慢速上传的客户端
+     */
+    private void slowUpload() throws IOException, InterruptedException, LoadGenerator.Rejected {
+        long pause = Long.getLong("load.slowUploadMillis", 50);
+        String boundary = "load-" + System.nanoTime();
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/coffee/upload").openConnection();
+        connection.setDoOutput(true);
+        connection.setRequestMethod("POST");
+        connection.setChunkedStreamingMode(1024);
+        connection.setRequestProperty(HttpHeaders.CONTENT_TYPE, "multipart/form-data; boundary=" + boundary);
+        byte[] chunk = new byte[1024];
+        Arrays.fill(chunk, (byte) 'a');
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"slow.txt\"\r\n"
+                    + "Content-Type: text/plain\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            for (int i = 0; i < 8; i++) {
+                out.write(chunk);
+                out.flush();
+                Thread.sleep(pause);
+            }
+            out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        }
+        int status = connection.getResponseCode();
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            StreamUtils.drain(in);
+        }
+        if (status == HttpURLConnection.HTTP_UNAVAILABLE) {
+            throw new LoadGenerator.Rejected("slowUpload returned " + status);
+        }
+        if (status != 200) {
+            throw new IOException("slowUpload returned " + status);
+        }
+    }
+
+    private void verify(Map<String, LoadGenerator.Stats> stats) {
+        System.out.println(LoadGenerator.report(stats));
+        System.out.println(resources());
+        String maxP99 = System.getProperty("load.maxP99");
+        stats.forEach((name, s) -> {
+            assertEquals(0, s.getErrors(), name + " errors");
+            if (maxP99 != null) {
+                double p99 = s.getHistogram().getValueAtPercentile(99) / 1000.0;
+                assertTrue(p99 <= Double.parseDouble(maxP99), name + " p99 " + p99 + "ms > " + maxP99 + "ms");
+            }
+        });
+    }
+
+    /**
+     * 服务端线程按名称统计: Tomcat为http-nio-*, Netty为reactor-http-*
+     */
+    private static String resources() {
+        int serverThreads = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("http-nio-") || thread.getName().startsWith("reactor-http-")) {
+                serverThreads++;
+            }
+        }
+        long gcCount = 0;
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(gc.getCollectionCount(), 0);
+            gcMillis += Math.max(gc.getCollectionTime(), 0);
+        }
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        return String.format("server threads=%d, live threads=%d, peak threads=%d, heap used=%dMB, committed=%dMB, gc=%d (%dms)",
+                serverThreads, threads.getThreadCount(), threads.getPeakThreadCount(),
+                heap.getUsed() >> 20, heap.getCommitted() >> 20, gcCount, gcMillis);
+    }
+
+    private static int random() {
+        return ThreadLocalRandom.current().nextInt(SEED_COUNT);
+    }
+
+    private static Coffee coffee(String prefix, int i) {
+        return Coffee.builder().id(prefix + i).name(prefix + i).price(BigDecimal.valueOf(10 + i)).build();
+    }
+}
@@ -0,0 +1,222 @@
+package com.httptest.httpdemo.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 按权重混合调用各个接口的压测器
+ * closed-loop: workers个线程各自循环, 上一个请求返回后立即发下一个, 吞吐量由服务端响应速度决定
+ * open-loop: 按固定速率rate发起请求, 交给workers个线程执行, 延迟从计划发起时间开始计算, 排队时间也计入延迟(避免coordinated omission)
+ * 延迟以微秒记录在HdrHistogram中, 预热阶段的数据不计入结果
+ * 服务端超出并发数限制返回的503计为rejected, 不计入errors和延迟
+ */
+public class LoadGenerator {
+
+    public interface Call {
+        void execute() throws Exception;
+    }
+
+    /**
+     * 不经过RestTemplate的调用收到503时抛出
+     */
+    public static class Rejected extends Exception {
+
+        public Rejected(String message) {
+            super(message);
+        }
+    }
+
+    private final Map<String, Call> calls = new LinkedHashMap<>();
+    private final Map<String, Integer> weights = new LinkedHashMap<>();
+    private final Map<String, Stats> stats = new LinkedHashMap<>();
+    private String[] schedule;
+
+    /**
+     * @param weight 该接口在混合请求中所占的权重, 0表示不调用
+     */
+    public LoadGenerator add(String name, int weight, Call call) {
+        calls.put(name, call);
+        weights.put(name, weight);
+        return this;
+    }
+
+    /**
+     * 覆盖权重, 格式 name=weight,name=weight, 未列出的接口权重为0
+     */
+    public LoadGenerator mix(String mix) {
+        if (mix == null || mix.trim().isEmpty()) {
+            return this;
+        }
+        weights.replaceAll((name, weight) -> 0);
+        for (String item : mix.split(",")) {
+            String[] pair = item.trim().split("=");
+            if (!calls.containsKey(pair[0])) {
+                throw new IllegalArgumentException("Unknown call " + pair[0] + ", available: " + calls.keySet());
+            }
+            weights.put(pair[0], pair.length > 1 ? Integer.parseInt(pair[1]) : 1);
+        }
+        return this;
+    }
+
+    public Map<String, Stats> runClosed(int workers, long warmupMillis, long durationMillis) throws InterruptedException {
+        prepare();
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        long measureStart = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(warmupMillis);
+        long end = measureStart + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        for (int w = 0; w < workers; w++) {
+            int offset = w;
+            executor.execute(() -> {
+                long i = offset;
+                long now;
+                while ((now = System.nanoTime()) < end) {
+                    String name = schedule[(int) (i++ % schedule.length)];
+                    invoke(name, now, now >= measureStart);
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(warmupMillis + durationMillis + 60_000, TimeUnit.MILLISECONDS);
+        return finish(durationMillis);
+    }
+
+    /**
+     * @param rate 每秒请求数
+     */
+    public Map<String, Stats> runOpen(int workers, int rate, long warmupMillis, long durationMillis) throws InterruptedException {
+        prepare();
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long measureStart = start + TimeUnit.MILLISECONDS.toNanos(warmupMillis);
+        long end = measureStart + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        for (long i = 0; ; i++) {
+            long intended = start + i * interval;
+            if (intended >= end) {
+                break;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            String name = schedule[(int) (i % schedule.length)];
+            executor.execute(() -> invoke(name, intended, intended >= measureStart));
+        }
+        executor.shutdown();
+        executor.awaitTermination(60, TimeUnit.SECONDS);
+        return finish(durationMillis);
+    }
+
+    private void prepare() {
+        //按权重展开成调用序列, 各worker从不同位置开始轮流取
+        List<String> list = new ArrayList<>();
+        weights.forEach((name, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                list.add(name);
+            }
+        });
+        if (list.isEmpty()) {
+            throw new IllegalStateException("No call has a positive weight");
+        }
+        Collections.shuffle(list, ThreadLocalRandom.current());
+        schedule = list.toArray(new String[0]);
+        stats.clear();
+        for (String name : weights.keySet()) {
+            if (weights.get(name) > 0) {
+                stats.put(name, new Stats());
+            }
+        }
+    }
+
+    private void invoke(String name, long startNanos, boolean record) {
+        Stats s = stats.get(name);
+        boolean ok = true;
+        try {
+            calls.get(name).execute();
+        } catch (HttpServerErrorException.ServiceUnavailable | Rejected e) {
+            if (record) {
+                s.rejected.increment();
+            }
+            return;
+        } catch (Exception e) {
+            ok = false;
+            if (record && s.errors.sum() == 0) {
+                System.err.println(name + " failed: " + e);
+            }
+        }
+        if (record) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+            s.histogram.recordValue(Math.max(micros, 1));
+            if (!ok) {
+                s.errors.increment();
+            }
+        }
+    }
+
+    private Map<String, Stats> finish(long durationMillis) {
+        for (Stats s : stats.values()) {
+            s.durationMillis = durationMillis;
+        }
+        return stats;
+    }
+
+    public static String report(Map<String, Stats> stats) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-16s %10s %8s %8s %10s %10s %10s %10s %10s%n",
+                "endpoint", "count", "errors", "rejected", "req/s", "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)"));
+        Histogram total = new Histogram(3);
+        long errors = 0;
+        long rejected = 0;
+        long durationMillis = 1;
+        for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+            Stats s = entry.getValue();
+            sb.append(line(entry.getKey(), s.histogram, s.errors.sum(), s.rejected.sum(), s.durationMillis));
+            total.add(s.histogram);
+            errors += s.errors.sum();
+            rejected += s.rejected.sum();
+            durationMillis = s.durationMillis;
+        }
+        sb.append(line("total", total, errors, rejected, durationMillis));
+        return sb.toString();
+    }
+
+    private static String line(String name, Histogram histogram, long errors, long rejected, long durationMillis) {
+        return String.format("%-16s %10d %8d %8d %10.1f %10.3f %10.3f %10.3f %10.3f%n",
+                name, histogram.getTotalCount(), errors, rejected, histogram.getTotalCount() * 1000.0 / durationMillis,
+                histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMaxValue() / 1000.0);
+    }
+
+    public static class Stats {
+
+        private final ConcurrentHistogram histogram = new ConcurrentHistogram(3);
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private long durationMillis;
+
+        public Histogram getHistogram() {
+            return histogram;
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getRejected() {
+            return rejected.sum();
+        }
+
+        public double getThroughput() {
+            return histogram.getTotalCount() * 1000.0 / durationMillis;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.httptest.httpdemo.metrics;
+
+import com.httptest.httpdemo.model.Coffee;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.math.BigDecimal;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "coffee.data-dir=target/test-data")
+public class CoffeeMetricsTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private CoffeeMetrics coffeeMetrics;
+
+    @Test
+    public void histogramBuckets() {
+        Histogram histogram = new Histogram(10, 100);
+        histogram.record(5);
+        histogram.record(10);
+        histogram.record(11);
+        histogram.record(1000);
+        assertArrayEquals(new long[]{2, 1, 1}, histogram.counts());
+        assertEquals(1026, histogram.sum());
+    }
+
+    @Test
+    public void recordsHandlers() throws InterruptedException {
+        restTemplate.postForObject("/coffee/body", Coffee.builder().id("metrics-1").name("metrics-1").price(BigDecimal.ONE).build(), Coffee.class);
+        restTemplate.getForObject("/coffee/findById?id=metrics-1", Coffee.class);
+        restTemplate.getForEntity("/coffee/metrics-missing", String.class);
+
+        MultiValueMap<String, Object> param = new LinkedMultiValueMap<>();
+        param.add("file", new ByteArrayResource(new byte[4096]) {
+            @Override
+            public String getFilename() {
+                return "metrics.bin";
+            }
+        });
+        restTemplate.postForObject("/coffee/upload1", param, String.class);
+
+        //指标在响应写出后记录, 可能晚于客户端收到响应
+        await(() -> recorded(handler("addWithBody"), 2) && recorded(handler("findById"), 2)
+                && recorded(handler("getById"), 4) && recorded(handler("upload1"), 2));
+        EndpointMetrics addWithBody = coffeeMetrics.get(handler("addWithBody"));
+        assertTrue(addWithBody.getStatusCount(2) >= 1);
+        assertTrue(addWithBody.getRequestBytes() > 0);
+        assertTrue(addWithBody.getResponseBytes() > 0);
+        assertTrue(coffeeMetrics.get(handler("getById")).getStatusCount(4) >= 1);
+        assertTrue(coffeeMetrics.get(handler("upload1")).getUploadBytes() > 4096);
+
+        ResponseEntity<String> result = restTemplate.getForEntity("/coffee/_metrics", String.class);
+        assertEquals(MediaType.parseMediaType(CoffeeMetrics.CONTENT_TYPE), result.getHeaders().getContentType());
+        String body = result.getBody();
+        assertTrue(body.contains("# TYPE coffee_http_request_duration_seconds histogram"));
+        assertTrue(body.contains("coffee_http_request_duration_seconds_bucket{handler=\"" + handler("findById") + "\",le=\"0.0001\"}"));
+        assertTrue(body.contains("coffee_http_request_duration_seconds_bucket{handler=\"" + handler("findById") + "\",le=\"+Inf\"}"));
+        assertTrue(body.contains("coffee_http_requests_total{handler=\"" + handler("getById") + "\",status=\"4xx\"}"));
+        assertTrue(body.contains("coffee_upload_throughput_bytes_per_second_count{handler=\"" + handler("upload1") + "\"}"));
+    }
+
+    /**
+     * 指标中的handler标签
+     */
+    protected String handler(String method) {
+        return "CoffeeController." + method;
+    }
+
+    private boolean recorded(String handler, int statusClass) {
+        EndpointMetrics metrics = coffeeMetrics.get(handler);
+        return metrics != null && metrics.getStatusCount(statusClass) > 0;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.httptest.httpdemo.metrics;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * 对WebFlux版本运行CoffeeMetricsTest的用例
+ */
+@ActiveProfiles("reactive")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "coffee.data-dir=target/test-data-reactive")
+public class ReactiveCoffeeMetricsTest extends CoffeeMetricsTest {
+
+    @Override
+    protected String handler(String method) {
+        return "ReactiveCoffeeController." + method;
+    }
+}
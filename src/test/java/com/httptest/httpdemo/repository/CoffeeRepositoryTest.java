@@ -0,0 +1,105 @@
+package com.httptest.httpdemo.repository;
+
+import com.httptest.httpdemo.model.Coffee;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CoffeeRepositoryTest {
+
+    @Test
+    public void saveAndFind() {
+        CoffeeRepository repository = new CoffeeRepository();
+        Coffee saved = repository.save(Coffee.builder().name("mocha").price(new BigDecimal(30)).build());
+
+        assertNotNull(saved.getId());
+        assertSame(saved, repository.findById(saved.getId()));
+        assertSame(saved, repository.findByName("mocha"));
+        assertEquals(1, repository.findAll().size());
+    }
+
+    @Test
+    public void renameUpdatesNameIndex() {
+        CoffeeRepository repository = new CoffeeRepository();
+        repository.save(Coffee.builder().id("7").name("mocha").price(new BigDecimal(30)).build());
+        repository.save(Coffee.builder().id("7").name("latte").price(new BigDecimal(31)).build());
+
+        assertNull(repository.findByName("mocha"));
+        assertEquals("7", repository.findByName("latte").getId());
+        //自动生成的id不与外部指定的id冲突
+        assertEquals("8", repository.save(Coffee.builder().name("flat white").build()).getId());
+    }
+
+    @Test
+    public void sharedNameSurvivesRename() {
+        CoffeeRepository repository = new CoffeeRepository();
+        repository.save(Coffee.builder().id("1").name("mocha").build());
+        repository.save(Coffee.builder().id("2").name("mocha").build());
+        //最后写入的记录
+        assertEquals("2", repository.findByName("mocha").getId());
+
+        repository.save(Coffee.builder().id("2").name("latte").build());
+        assertEquals("1", repository.findByName("mocha").getId());
+        assertEquals("2", repository.findByName("latte").getId());
+
+        repository.save(Coffee.builder().id("2").name("mocha").build());
+        repository.save(Coffee.builder().id("1").name("mocha").price(new BigDecimal(5)).build());
+        assertEquals(new BigDecimal(5), repository.findByName("mocha").getPrice());
+        repository.save(Coffee.builder().id("1").name("flat white").build());
+        assertEquals("2", repository.findByName("mocha").getId());
+        repository.save(Coffee.builder().id("2").name("americano").build());
+        assertNull(repository.findByName("mocha"));
+    }
+
+    @Test
+    public void findPage() {
+        CoffeeRepository repository = new CoffeeRepository();
+        for (int i = 0; i < 25; i++) {
+            repository.save(Coffee.builder().id(String.format("%03d", i)).name("c" + i).build());
+        }
+
+        List<Coffee> seen = new ArrayList<>();
+        String after = null;
+        do {
+            List<Coffee> page = repository.findPage(after, 10);
+            seen.addAll(page);
+            after = page.size() == 10 && repository.existsAfter(page.get(9).getId()) ? page.get(9).getId() : null;
+        } while (after != null);
+
+        assertEquals(25, seen.size());
+        assertEquals("000", seen.get(0).getId());
+        assertEquals("024", seen.get(24).getId());
+        assertEquals("011", repository.findPage("010", 1).get(0).getId());
+    }
+
+    @Test
+    public void concurrentWrites() throws Exception {
+        CoffeeRepository repository = new CoffeeRepository();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        repository.save(Coffee.builder().name("c-" + thread + "-" + i).build());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(8000, repository.count());
+        assertNotNull(repository.findByName("c-3-999"));
+    }
+}
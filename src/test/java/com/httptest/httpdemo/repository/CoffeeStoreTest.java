@@ -0,0 +1,165 @@
+package com.httptest.httpdemo.repository;
+
+import com.httptest.httpdemo.model.Coffee;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CoffeeStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void recoversAfterCrash() throws Exception {
+        Path data = dir.resolve("data");
+        CoffeeRepository repository = open(data, 1 << 20);
+        assertEquals(2, repository.count());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        repository.save(Coffee.builder().name("c-" + thread + "-" + i).price(BigDecimal.valueOf(i, 2)).build());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        repository.save(Coffee.builder().id("7").name("renamed").build());
+
+        //save返回时记录已写入磁盘, 复制目录模拟此刻崩溃
+        CoffeeRepository recovered = open(crash(data), 1 << 20);
+        assertEquals(802, recovered.count());
+        assertEquals(new BigDecimal("0.99"), recovered.findByName("c-5-99").getPrice());
+        assertEquals("7", recovered.findByName("renamed").getId());
+        //初始数据不重复写入, 自动生成的id继续递增
+        assertEquals("1", recovered.findByName("natie").getId());
+        assertEquals("803", recovered.save(Coffee.builder().name("next").build()).getId());
+    }
+
+    @Test
+    public void truncatesTornTail() throws Exception {
+        Path data = dir.resolve("data");
+        CoffeeRepository repository = open(data, 1 << 20);
+        repository.save(Coffee.builder().id("a").name("a").build());
+        Path image = crash(data);
+        Path log = image.resolve("log-1.wal");
+        long size = Files.size(log);
+        //写了一半的记录
+        Files.write(log, new byte[]{0, 0, 0, 20, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        CoffeeRepository recovered = open(image, 1 << 20);
+        assertEquals(3, recovered.count());
+        assertEquals(size, Files.size(log));
+        recovered.save(Coffee.builder().id("b").name("b").build());
+        assertEquals("b", open(crash(image), 1 << 20).findById("b").getName());
+    }
+
+    @Test
+    public void snapshotReplacesHistory() throws Exception {
+        Path data = dir.resolve("data");
+        CoffeeRepository repository = open(data, 4096);
+        for (int i = 0; i < 2000; i++) {
+            repository.save(Coffee.builder().id("k" + (i % 10)).name("v" + i).build());
+        }
+        repository.close();
+
+        //关闭时写出最终快照, 只留下快照和一个空日志
+        List<String> files = names(data);
+        assertEquals(3, files.size(), files.toString());
+        assertTrue(files.contains("lock"));
+        assertTrue(Files.size(data.resolve(files.get(0))) < 4096);
+
+        CoffeeRepository recovered = open(data, 4096);
+        assertEquals(12, recovered.count());
+        assertEquals("v1999", recovered.findById("k9").getName());
+        assertEquals("k0", recovered.findByName("v1990").getId());
+    }
+
+    @Test
+    public void failedAppendLeavesNoTrace() throws Exception {
+        CoffeeRepository repository = open(dir.resolve("data"), 1 << 20);
+        List<Coffee> changed = new ArrayList<>();
+        repository.addListener((previous, current) -> changed.add(current));
+        repository.close();
+
+        assertThrows(IllegalStateException.class, () -> repository.save(Coffee.builder().id("9").name("lost").build()));
+        assertNull(repository.findById("9"));
+        assertNull(repository.findByName("lost"));
+        assertThrows(IllegalStateException.class, () -> repository.saveAll(Arrays.asList(
+                Coffee.builder().id("10").name("lost-1").build(), Coffee.builder().id("11").name("lost-2").build())));
+        assertNull(repository.findById("10"));
+        assertNull(repository.findById("11"));
+        assertTrue(changed.isEmpty());
+    }
+
+    @Test
+    public void recoveryDoesNotNotifyListeners() throws Exception {
+        Path data = dir.resolve("data");
+        open(data, 1 << 20).save(Coffee.builder().name("mocha").build());
+
+        CoffeeRepository recovered = new CoffeeRepository(new CoffeeStore(crash(data).toString(), 1 << 20));
+        List<Coffee> changed = new ArrayList<>();
+        recovered.addListener((previous, current) -> changed.add(current));
+        recovered.init();
+        assertEquals(3, recovered.count());
+        assertTrue(changed.isEmpty());
+    }
+
+    @Test
+    public void rejectsSecondStoreOnSameDirectory() throws Exception {
+        Path data = dir.resolve("data");
+        open(data, 1 << 20);
+        assertThrows(IllegalStateException.class, () -> open(data, 1 << 20));
+    }
+
+    private static CoffeeRepository open(Path dir, long snapshotBytes) throws IOException {
+        CoffeeRepository repository = new CoffeeRepository(new CoffeeStore(dir.toString(), snapshotBytes));
+        repository.init();
+        return repository;
+    }
+
+    private Path crash(Path data) throws IOException {
+        Path image = Files.createTempDirectory(dir, "crash");
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(data)) {
+            for (Path file : files) {
+                if (!file.getFileName().toString().equals("lock")) {
+                    Files.copy(file, image.resolve(file.getFileName()));
+                }
+            }
+        }
+        return image;
+    }
+
+    private static List<String> names(Path dir) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                names.add(file.getFileName().toString());
+            }
+        }
+        names.sort(null);
+        return names;
+    }
+}
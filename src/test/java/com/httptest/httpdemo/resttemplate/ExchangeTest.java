@@ -2,6 +2,7 @@ package com.httptest.httpdemo.resttemplate;
 
 import com.httptest.httpdemo.model.Coffee;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpMethod;
@@ -13,7 +14,8 @@ import java.util.List;
 @SpringBootTest
 public class ExchangeTest {
 
-    private RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    private RestTemplate restTemplate;
 
     @Test
     public void getAll2() {
@@ -2,6 +2,7 @@ package com.httptest.httpdemo.resttemplate;
 
 import com.httptest.httpdemo.model.Coffee;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
@@ -16,8 +17,8 @@ import java.util.Map;
 @SpringBootTest
 public class GetTest {
 
-    //@Autowired
-    private RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    private RestTemplate restTemplate;
 
     @Test
     public void getAll() {
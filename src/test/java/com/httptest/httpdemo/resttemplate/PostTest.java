@@ -3,6 +3,7 @@ package com.httptest.httpdemo.resttemplate;
 import com.httptest.httpdemo.model.Coffee;
 import com.httptest.httpdemo.model.CoffeeFile;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.HttpEntity;
@@ -39,7 +40,8 @@ import java.util.Map;
 @SpringBootTest
 public class PostTest {
 
-    private RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    private RestTemplate restTemplate;
 
     @Test
     public void postByRequestObject() {
@@ -383,11 +385,13 @@ public class PostTest {
     //---------------------------------------------------------------------------------------------------------------------------------------------------------
 
     /**
-     *
+     * HttpURLConnection会为POST默认加上Content-Type: application/x-www-form-urlencoded, HttpClient不会, 需要显式指定
      */
     @Test
     public void postByFormUrlencoded() {
-        Coffee result = restTemplate.postForObject("http://localhost:8000/coffee/form-data-urlencoded?id=1&name=mocha&price=100", null, Coffee.class);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+        Coffee result = restTemplate.postForObject("http://localhost:8000/coffee/form-data-urlencoded?id=1&name=mocha&price=100", new HttpEntity<>(headers), Coffee.class);
         System.out.println(result);
     }
 
@@ -0,0 +1,84 @@
+package com.httptest.httpdemo.search;
+
+import com.httptest.httpdemo.model.Coffee;
+import com.httptest.httpdemo.repository.CoffeeRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CoffeeSearchIndexTest {
+
+    @Test
+    public void prefixIsCaseInsensitiveAndSorted() {
+        CoffeeSearchIndex index = index("Mocha", "macchiato", "Latte", "mocha latte", "americano");
+
+        assertEquals(names("Mocha", "mocha latte"), names(index.prefix("MOC", 10)));
+        assertEquals(names("macchiato", "Mocha", "mocha latte"), names(index.prefix("m", 10)));
+        assertEquals(names("macchiato"), names(index.prefix("m", 1)));
+        assertTrue(index.prefix("x", 10).isEmpty());
+    }
+
+    @Test
+    public void containsRanksEarlierAndShorterMatchesFirst() {
+        CoffeeSearchIndex index = index("iced latte", "latte", "oat latte macchiato", "mocha");
+
+        assertEquals(names("latte", "oat latte macchiato", "iced latte"), names(index.contains("LATTE", 10)));
+        assertEquals(names("latte"), names(index.contains("latte", 1)));
+        assertTrue(index.contains("latter", 10).isEmpty());
+        //不足三个字符时仍按子串匹配, 不退化为前缀查询
+        assertEquals(names("latte", "oat latte macchiato", "iced latte"), names(index.contains("la", 10)));
+        assertEquals(names("mocha", "oat latte macchiato"), names(index.contains("ch", 10)));
+        assertEquals(names("iced latte"), names(index.contains("d", 10)));
+    }
+
+    @Test
+    public void fuzzyToleratesTypos() {
+        CoffeeSearchIndex index = index("cappuccino", "americano", "espresso");
+
+        assertEquals(names("cappuccino"), names(index.fuzzy("capucino", 10)));
+        assertEquals(names("espresso"), names(index.fuzzy("expresso", 10)));
+        assertTrue(index.fuzzy("tea", 10).isEmpty());
+    }
+
+    @Test
+    public void updatedOnSaveAndRename() {
+        CoffeeRepository repository = new CoffeeRepository();
+        CoffeeSearchIndex index = new CoffeeSearchIndex(repository);
+        repository.save(Coffee.builder().id("1").name("mocha").build());
+        assertEquals(names("mocha"), names(index.prefix("mo", 10)));
+
+        repository.save(Coffee.builder().id("1").name("latte").build());
+        assertTrue(index.prefix("mo", 10).isEmpty());
+        assertTrue(index.contains("och", 10).isEmpty());
+        assertTrue(index.contains("oc", 10).isEmpty());
+        assertEquals(names("latte"), names(index.contains("att", 10)));
+        assertEquals(1, index.stats().get("names"));
+    }
+
+    private static CoffeeSearchIndex index(String... names) {
+        CoffeeRepository repository = new CoffeeRepository();
+        for (String name : names) {
+            repository.save(Coffee.builder().name(name).build());
+        }
+        return new CoffeeSearchIndex(repository);
+    }
+
+    private static List<String> names(String... names) {
+        List<String> list = new ArrayList<>();
+        for (String name : names) {
+            list.add(name);
+        }
+        return list;
+    }
+
+    private static List<String> names(List<Coffee> coffees) {
+        List<String> list = new ArrayList<>();
+        for (Coffee coffee : coffees) {
+            list.add(coffee.getName());
+        }
+        return list;
+    }
+}
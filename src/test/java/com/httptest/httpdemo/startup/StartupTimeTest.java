@@ -0,0 +1,119 @@
+package com.httptest.httpdemo.startup;
+
+import com.httptest.httpdemo.HttpDemoApplication;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 在新的JVM中启动应用, 记录从启动进程到GET /coffee第一次返回200的时间(time-to-first-request), 每种方式取多次的中位数
+ * default: 默认配置; fast: fast profile(延迟初始化); cds: fast profile + CDS归档, 需要先执行 mvn -Pcds package -DskipTests
+ * 默认不执行, 通过系统属性开启和配置:
+ * <pre>
+ * mvn test -Dtest=StartupTimeTest -Dstartup=true
+ *   -Dstartup.runs=3    每种方式的启动次数
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "startup", matches = "true")
+public class StartupTimeTest {
+
+    private static final long TIMEOUT_MILLIS = 120_000;
+    private static final Path CDS_DIR = Paths.get("target", "cds");
+
+    @Test
+    public void timeToFirstRequest() throws Exception {
+        int runs = Integer.getInteger("startup.runs", 3);
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String classpath = System.getProperty("java.class.path");
+
+        Map<String, List<String>> modes = new LinkedHashMap<>();
+        modes.put("default", Arrays.asList(java, "-cp", classpath, HttpDemoApplication.class.getName()));
+        modes.put("fast", Arrays.asList(java, "-cp", classpath, HttpDemoApplication.class.getName(), "--spring.profiles.active=fast"));
+        if (Files.exists(CDS_DIR.resolve("app.jsa"))) {
+            modes.put("cds", Arrays.asList(java, "-XX:SharedArchiveFile=" + CDS_DIR.resolve("app.jsa"), "-Xlog:cds=error",
+                    "-jar", CDS_DIR.resolve("http-demo.jar").toString(), "--spring.profiles.active=fast"));
+        } else {
+            System.out.println("cds skipped, run mvn -Pcds package -DskipTests first");
+        }
+
+        StringBuilder report = new StringBuilder(String.format("%-8s %10s %10s %10s%n", "mode", "median(ms)", "min(ms)", "max(ms)"));
+        for (Map.Entry<String, List<String>> mode : modes.entrySet()) {
+            List<Long> times = new ArrayList<>();
+            for (int i = 0; i < runs; i++) {
+                times.add(start(mode.getValue(), mode.getKey() + "-" + i));
+            }
+            Collections.sort(times);
+            report.append(String.format("%-8s %10d %10d %10d%n", mode.getKey(), times.get(times.size() / 2), times.get(0), times.get(times.size() - 1)));
+        }
+        System.out.println(report);
+    }
+
+    /**
+     * @return 启动进程到GET /coffee返回200的毫秒数
+     */
+    private static long start(List<String> command, String name) throws IOException, InterruptedException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Path dataDir = Paths.get("target", "startup-data", name);
+        List<String> args = new ArrayList<>(command);
+        args.add("--server.port=" + port);
+        args.add("--coffee.data-dir=" + dataDir.toAbsolutePath());
+        File log = dataDir.resolveSibling(name + ".log").toFile();
+        Files.createDirectories(dataDir);
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(args).redirectErrorStream(true).redirectOutput(log).start();
+        try {
+            URL url = new URL("http://localhost:" + port + "/coffee");
+            while (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS)) {
+                assertTrue(process.isAlive(), name + " exited, see " + log);
+                if (ok(url)) {
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                }
+                Thread.sleep(10);
+            }
+            return fail(name + " did not answer GET /coffee within " + TIMEOUT_MILLIS + "ms, see " + log);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static boolean ok(URL url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(100);
+            connection.setReadTimeout(10_000);
+            try (InputStream in = connection.getInputStream()) {
+                while (in.read() != -1) {
+                    //读完响应
+                }
+            }
+            return connection.getResponseCode() == 200;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.httptest.httpdemo.storage;
+
+import com.httptest.httpdemo.model.StoredFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MultipartUploaderTest {
+
+    @TempDir
+    Path dir;
+
+    private UploadStorage storage;
+    private MultipartUploader uploader;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        storage = new UploadStorage(dir.toString());
+        storage.init();
+        uploader = new MultipartUploader(storage, 4, 3);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        uploader.destroy();
+    }
+
+    @Test
+    public void resultsKeepRequestOrder() throws Exception {
+        List<MultipartFile> files = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            files.add(new MockMultipartFile("file" + i, "f" + i + ".txt", "text/plain", ("content " + i).getBytes(StandardCharsets.UTF_8)));
+        }
+
+        List<StoredFile> stored = uploader.storeAll(files);
+
+        assertEquals(20, stored.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals("f" + i + ".txt", stored.get(i).getFileName());
+            assertSame(stored.get(i), storage.find(stored.get(i).getId()));
+        }
+    }
+
+    @Test
+    public void failureDiscardsStoredFiles() {
+        List<MultipartFile> files = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            files.add(new MockMultipartFile("file" + i, "f" + i + ".txt", "text/plain", ("content " + i).getBytes(StandardCharsets.UTF_8)));
+        }
+        files.add(5, new MockMultipartFile("broken", "broken.txt", "text/plain", new byte[0]) {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                throw new IOException("broken part");
+            }
+
+            @Override
+            public void transferTo(File dest) throws IOException {
+                throw new IOException("broken part");
+            }
+        });
+
+        IOException e = assertThrows(IOException.class, () -> uploader.storeAll(files));
+        assertEquals("broken part", e.getMessage());
+        assertEquals(0, storage.stats().get("files"));
+        assertEquals(0, storage.stats().get("blobs"));
+    }
+}
@@ -0,0 +1,74 @@
+package com.httptest.httpdemo.storage;
+
+import com.httptest.httpdemo.model.StoredFile;
+import com.httptest.httpdemo.model.UploadSession;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UploadSessionsTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void sessionSurvivesRestart() throws Exception {
+        byte[] content = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+        UploadStorage storage = new UploadStorage(dir.toString());
+        storage.init();
+        UploadSessions sessions = new UploadSessions(storage, dir.toString());
+        sessions.init();
+        UploadSession session = sessions.create("restart.txt", "text/plain", content.length);
+        sessions.write(session.getId(), 0, 8, new ByteArrayInputStream(content, 0, 8));
+        sessions.destroy();
+
+        UploadSessions restarted = new UploadSessions(storage, dir.toString());
+        restarted.init();
+        UploadSession state = restarted.find(session.getId());
+        assertEquals(8, state.getOffset());
+        assertEquals("restart.txt", state.getFileName());
+
+        restarted.write(session.getId(), 8, 8, new ByteArrayInputStream(content, 8, 8));
+        StoredFile stored = restarted.complete(session.getId(), UploadStorage.toHex(UploadStorage.sha256().digest(content)));
+        assertArrayEquals(content, Files.readAllBytes(storage.path(stored)));
+        assertNull(restarted.find(session.getId()));
+    }
+
+    @Test
+    public void interruptedChunkKeepsWrittenPart() throws Exception {
+        UploadStorage storage = new UploadStorage(dir.toString());
+        storage.init();
+        UploadSessions sessions = new UploadSessions(storage, dir.toString());
+        sessions.init();
+        UploadSession session = sessions.create("broken.bin", null, 200 * 1024);
+        InputStream dropped = new InputStream() {
+            private int remaining = 100 * 1024;
+
+            @Override
+            public int read() throws IOException {
+                throw new IOException("connection reset");
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (remaining == 0) {
+                    throw new IOException("connection reset");
+                }
+                int n = Math.min(len, remaining);
+                remaining -= n;
+                return n;
+            }
+        };
+
+        assertThrows(IOException.class, () -> sessions.write(session.getId(), 0, 200 * 1024, dropped));
+        assertEquals(100 * 1024, sessions.find(session.getId()).getOffset());
+    }
+}
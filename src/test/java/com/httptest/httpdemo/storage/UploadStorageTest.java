@@ -0,0 +1,95 @@
+package com.httptest.httpdemo.storage;
+
+import com.httptest.httpdemo.model.StoredFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UploadStorageTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void storeComputesSizeAndSha256() throws Exception {
+        UploadStorage storage = new UploadStorage(dir.toString());
+        storage.init();
+        byte[] content = "hello".getBytes(StandardCharsets.UTF_8);
+
+        StoredFile stored = storage.store(new MockMultipartFile("file", "hello.txt", "text/plain", content));
+
+        assertEquals("hello.txt", stored.getFileName());
+        assertEquals(5, stored.getSize());
+        assertEquals("2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824", stored.getSha256());
+        assertArrayEquals(content, Files.readAllBytes(storage.path(stored)));
+        assertSame(stored, storage.find(stored.getId()));
+    }
+
+    @Test
+    public void storeLargeFile() throws Exception {
+        UploadStorage storage = new UploadStorage(dir.toString());
+        storage.init();
+        byte[] content = new byte[20 * 1024 * 1024 + 13];
+        new Random(1).nextBytes(content);
+
+        StoredFile stored = storage.store(new MockMultipartFile("file", "big.bin", null, content));
+
+        assertEquals(content.length, stored.getSize());
+        assertEquals(UploadStorage.toHex(UploadStorage.sha256().digest(content)), stored.getSha256());
+        assertArrayEquals(content, Files.readAllBytes(storage.path(stored)));
+    }
+
+    @Test
+    public void duplicateContentIsStoredOnce() throws Exception {
+        UploadStorage storage = new UploadStorage(dir.toString());
+        storage.init();
+        byte[] content = "same".getBytes(StandardCharsets.UTF_8);
+
+        StoredFile first = storage.store(new MockMultipartFile("file", "a.txt", "text/plain", content));
+        StoredFile second = storage.store(new MockMultipartFile("file", "b.txt", "text/plain", content));
+
+        assertNotEquals(first.getId(), second.getId());
+        assertEquals(first.getSha256(), second.getSha256());
+        assertEquals(storage.path(first), storage.path(second));
+        assertEquals(1, storage.stats().get("blobs"));
+        assertEquals(1L, storage.stats().get("deduplicated"));
+
+        assertTrue(storage.delete(first.getId()));
+        assertNull(storage.find(first.getId()));
+        assertTrue(Files.exists(storage.path(second)));
+        assertTrue(storage.delete(second.getId()));
+        assertFalse(Files.exists(storage.path(second)));
+        assertFalse(storage.delete(second.getId()));
+    }
+
+    @Test
+    public void restartReplaysLogAndRemovesOrphans() throws Exception {
+        UploadStorage storage = new UploadStorage(dir.toString());
+        storage.init();
+        StoredFile kept = storage.store(new MockMultipartFile("file", "kept.txt", null, "kept".getBytes(StandardCharsets.UTF_8)));
+        StoredFile deleted = storage.store(new MockMultipartFile("file", "deleted.txt", null, "deleted".getBytes(StandardCharsets.UTF_8)));
+        storage.delete(deleted.getId());
+        //写入blob后、写入记录前中断留下的blob
+        Path orphan = dir.resolve("blobs").resolve("00").resolve("00orphan");
+        Files.createDirectories(orphan.getParent());
+        Files.write(orphan, new byte[1]);
+        Files.write(dir.resolve("tmp").resolve("partial"), new byte[1]);
+
+        UploadStorage restarted = new UploadStorage(dir.toString());
+        restarted.init();
+
+        assertEquals(kept, restarted.find(kept.getId()));
+        assertNull(restarted.find(deleted.getId()));
+        assertArrayEquals("kept".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(restarted.path(kept)));
+        assertFalse(Files.exists(orphan));
+        assertFalse(Files.exists(dir.resolve("tmp").resolve("partial")));
+        assertEquals(1, restarted.stats().get("blobs"));
+    }
+}